@@ -0,0 +1,25 @@
+package elevator_sim.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// запуск всех бенчмарков с профилем аллокаций (-prof gc)
+// аргумент - регулярка по именам, например: BenchMain Dispatcher
+public final class BenchMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : "elevator_sim\\..*";
+
+        Options opt = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private BenchMain() {}
+}
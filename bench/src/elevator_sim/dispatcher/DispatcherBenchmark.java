@@ -0,0 +1,61 @@
+package elevator_sim.dispatcher;
+
+import elevator_sim.models.Direction;
+import elevator_sim.models.Elevator;
+import elevator_sim.models.HallRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// стоимость одного решения диспетчера в зависимости от размера парка и высоты дома
+// решение меряется через Dispatcher.preview: выбор лифта без очереди, назначения и метрик;
+// вызовы заведены заранее и не меняются, поэтому в замер не попадают ни аллокации, ни сантехника очереди
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.mode=off")
+public class DispatcherBenchmark {
+
+    private static final int CALLS = 1024;
+
+    @Param({"4", "16", "64", "128", "512"})
+    public int fleet;
+
+    @Param({"16", "64", "200"})
+    public int floors;
+
+    private Dispatcher dispatcher;
+    private final HallRequest[] calls = new HallRequest[CALLS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rnd = new Random(42);
+
+        List<Elevator> elevators = new ArrayList<>();
+        for (int i = 0; i < fleet; i++) {
+            Elevator e = new Elevator(i + 1, 1 + rnd.nextInt(floors));
+            // у части лифтов уже есть цели, чтобы счет шел не по пустому парку
+            int targets = rnd.nextInt(4);
+            for (int t = 0; t < targets; t++) e.addTarget(1 + rnd.nextInt(floors));
+            elevators.add(e);
+        }
+        dispatcher = new Dispatcher(elevators);
+
+        for (int i = 0; i < CALLS; i++) {
+            Direction dir = rnd.nextBoolean() ? Direction.UP : Direction.DOWN;
+            calls[i] = new HallRequest(1 + rnd.nextInt(floors), dir, i, i);
+        }
+    }
+
+    @Benchmark
+    public int chooseElevator() {
+        HallRequest req = calls[(next++) & (CALLS - 1)];
+        return dispatcher.preview(req).id;
+    }
+}
@@ -0,0 +1,81 @@
+package elevator_sim.models;
+
+import elevator_sim.SimConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// планирование LOOK на одном лифте с большим числом ожидающих этажей, только через публичные методы лифта
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.mode=off")
+public class ElevatorBenchmark {
+
+    @Param({"16", "64", "200"})
+    public int floors;
+
+    // сколько этажей ждут лифт: целей из кабины и вызовов с этажей поровну
+    @Param({"4", "32", "128"})
+    public int pending;
+
+    private Elevator elevator;
+    private final ElevatorState scratch = new ElevatorState();
+    private final RoutePlan plan = new RoutePlan();
+
+    // второй лифт объезжает цели по LOOK; объехал все - получает их снова
+    private Elevator cycling;
+    private int[] cycleTargets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rnd = new Random(42);
+        SimConfig config = SimConfig.defaults().withFloors(floors);
+        elevator = new Elevator(1, floors / 2, config);
+
+        int n = Math.min(pending, floors);
+        for (int i = 0; i < n; i++) {
+            int f = 1 + rnd.nextInt(floors);
+            if ((i & 1) == 0) {
+                elevator.addTarget(f);
+            } else {
+                Direction d = (f == floors || (f > 1 && rnd.nextBoolean())) ? Direction.DOWN : Direction.UP;
+                elevator.registerHallRequest(new HallRequest(f, d, i, i));
+            }
+        }
+
+        cycling = new Elevator(2, floors / 2, config);
+        cycleTargets = new int[n];
+        for (int i = 0; i < n; i++) cycleTargets[i] = 1 + rnd.nextInt(floors);
+        for (int f : cycleTargets) cycling.addTarget(f);
+    }
+
+    // шаг автомата лифта: выбор следующей остановки по LOOK, движение, двери
+    @Benchmark
+    public double step() {
+        double d = cycling.step();
+        if (d == Elevator.STEP_IDLE) {
+            for (int f : cycleTargets) cycling.addTarget(f);
+        }
+        return d;
+    }
+
+    // маршрут, как его читает диспетчер для оценки ETA
+    @Benchmark
+    public RoutePlan readPlan() {
+        return elevator.readPlan(plan);
+    }
+
+    @Benchmark
+    public ElevatorState getStateSnapshot() {
+        return elevator.getStateSnapshot();
+    }
+
+    @Benchmark
+    public ElevatorState readState() {
+        return elevator.readState(scratch);
+    }
+}
@@ -0,0 +1,50 @@
+package elevator_sim.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// чтение состояния диспетчером, пока поток лифта его меняет
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.mode=off")
+public class ElevatorStateContentionBenchmark {
+
+    @Param({"16", "200"})
+    public int floors;
+
+    private Elevator elevator;
+    private int nextTarget;
+    // у каждого читателя свой снимок, как у диспетчера
+    private final ThreadLocal<ElevatorState> scratch = ThreadLocal.withInitial(ElevatorState::new);
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        elevator = new Elevator(1, 1);
+        nextTarget = floors;
+        elevator.addTarget(nextTarget);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public ElevatorState readers() {
+        return elevator.readState(scratch.get());
+    }
+
+    // лифт крутит свой автомат без пауз: едет, открывает двери, снова получает цель
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public double writer() {
+        double d = elevator.step();
+        if (d == Elevator.STEP_IDLE) {
+            nextTarget = (nextTarget == 1) ? floors : 1;
+            elevator.addTarget(nextTarget);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,45 @@
+package elevator_sim.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// цена одного вызова лога для вызывающего потока в каждом режиме
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+
+    @Param({"sync", "async", "off"})
+    public String mode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // режим читается один раз при создании логгера, в каждом форке он свой
+        System.setProperty("log.mode", mode);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Logger.get();
+        // debug ниже порога - проверяем, что отфильтрованный вызов ничего не стоит
+        Logger.setLevel(LogLevel.INFO);
+    }
+
+    @Benchmark
+    public void ints() {
+        Logger.logLine("Прибытие", "лифт", 3, "этаж", 7);
+    }
+
+    @Benchmark
+    public void varargs() {
+        Logger.logLine("Посадка", "лифт", 3, "этаж", 7, "пас", "ab12");
+    }
+
+    @Benchmark
+    public void filteredDebug() {
+        Logger.debugLine("Местонахождение", "лифт", 3, "этаж", 7);
+    }
+}
@@ -0,0 +1,36 @@
+package elevator_sim.workload;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// сколько стоит одно прибытие пассажира: прореживание потока Пуассона и выборка пары этажей
+// генератор не должен быть узким местом даже на миллионах прибытий в секунду
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.mode=off")
+public class WorkloadBenchmark {
+
+    @Param({"UNIFORM", "UP_PEAK", "DAY"})
+    public Workload.Profile profile;
+
+    @Param({"16", "200"})
+    public int floors;
+
+    private ArrivalStream stream;
+    private final Arrival arrival = new Arrival();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stream = Workload.profile(profile, floors, 2.0).stream(42);
+    }
+
+    @Benchmark
+    public int next() {
+        stream.next(arrival);
+        return arrival.origin ^ arrival.destination;
+    }
+}
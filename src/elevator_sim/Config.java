@@ -10,7 +10,21 @@ public final class Config {
     public static final double DOOR_CLOSE_TIME = 2.0;
     // симуляция
     public static final int MAX_PASSENGERS = 25;
-    public static final int MAX_ACTIVE_PASSENGERS = 8; // (можно оставить 8)
+    // интенсивность прихода пассажиров в секунду (в среднем один раз в 0.5 с)
+    public static final double ARRIVAL_RATE = 2.0;
+    // пакетное назначение: сколько мс диспетчер собирает вызовы перед общим решением
+    public static final long DISPATCH_BATCH_WINDOW_MS = 50;
+    // шард забирает вызовы у соседа, только если у того в очереди не меньше стольких заявок
+    public static final int STEAL_THRESHOLD = 4;
+    // как часто диспетчер пересматривает назначенные, но еще не подобранные вызовы
+    public static final long REASSIGN_INTERVAL_MS = 2000;
+    // нагрузка: за столько секунд пик нарастает и спадает, столько же длятся фазы рабочего дня
+    public static final double WORKLOAD_PHASE_SEC = 600;
+    // парковка: спрос по этажам считается в скользящих окнах такой длины, помним столько последних окон
+    public static final long PARKING_WINDOW_MS = 30_000;
+    public static final int PARKING_WINDOWS = 10;
+    // как часто диспетчер расставляет свободные лифты
+    public static final long PARKING_INTERVAL_MS = 5000;
     // вместимость
     public static final int CAPACITY = 6;
 
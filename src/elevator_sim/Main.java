@@ -1,28 +1,105 @@
 package elevator_sim;
-import elevator_sim.dispatcher.Dispatcher;
+import elevator_sim.dispatcher.RequestDispatcher;
+import elevator_sim.engine.SimClock;
+import elevator_sim.metrics.SimMetrics;
+import elevator_sim.metrics.TelemetryServer;
 import elevator_sim.models.Elevator;
+import elevator_sim.simulation.ElevatorLoop;
+import elevator_sim.simulation.EventDrivenSimulation;
+import elevator_sim.simulation.MonteCarloRunner;
 import elevator_sim.simulation.PassengerGenerator;
+import elevator_sim.simulation.ScalingHarness;
+import elevator_sim.trace.TraceReader;
+import elevator_sim.trace.TraceWriter;
+import elevator_sim.utils.LogLevel;
 import elevator_sim.utils.Logger;
-import java.util.ArrayList;
+import java.nio.file.Path;
 import java.util.List;
 
 public final class Main {
 
     public static void main(String[] args) {
-        Logger.logLine("Начало симуляции", "этажи", Config.FLOORS, "лифты", Config.ELEVATORS);
-        List<Elevator> elevators = new ArrayList<>();
-        for (int i = 0; i < Config.ELEVATORS; i++) {
-            // стартовые этажи чтобы лифты не стояли все в одной точке
-            int startFloor = (i == 0) ? 1 : ((i == 1) ? Config.FLOORS : (Config.FLOORS / 2));
-
-            Elevator e = new Elevator(i + 1, startFloor);
-            elevators.add(e);
-            e.start();
+        // -Dsim.config=здание.properties задает этажи, группы лифтов и вместимость без пересборки
+        SimConfig config = SimConfig.fromProperty();
+
+        // java elevator_sim.Main des [seed] [пассажиров] - событийный режим на виртуальном времени
+        if (args.length > 0 && "des".equals(args[0])) {
+            long seed = (args.length > 1) ? Long.parseLong(args[1]) : 1L;
+            int passengers = (args.length > 2) ? Integer.parseInt(args[2]) : Config.MAX_PASSENGERS;
+
+            Logger.logLine("Начало симуляции", "этажи", config.floors, "лифты", config.elevators, "seed", seed);
+            EventDrivenSimulation sim = EventDrivenSimulation.create(config, seed, passengers);
+            sim.metrics().register("des");
+
+            TraceWriter recorder = openRecorder(sim.scheduler());
+            TraceReader replay = openReplay();
+            if (recorder != null) sim.recordTo(recorder);
+            if (replay != null) sim.replayFrom(replay, replaySpeed());
+            // -Dcheckpoint.resume=файл продолжает прогон из снимка, -Dcheckpoint.file=файл пишет снимки
+            // каждые -Dcheckpoint.every модельных секунд
+            String resume = System.getProperty("checkpoint.resume");
+            if (resume != null) sim.restore(Path.of(resume));
+            String checkpoint = System.getProperty("checkpoint.file");
+            if (checkpoint != null) {
+                sim.checkpointTo(Path.of(checkpoint), Double.parseDouble(System.getProperty("checkpoint.every", "600")));
+            }
+
+            // -Dtelemetry.port=N: состояние парка и KPI вживую на http://localhost:N/
+            TelemetryServer telemetry = TelemetryServer.fromProperty(sim.elevators(), sim.metrics());
+            sim.runToCompletion();
+            if (telemetry != null) telemetry.close();
+            close(recorder, replay);
+            Logger.logLine("Конец симуляции");
+            Logger.flush();
+            System.out.print(sim.metrics().summary());
+            return;
+        }
+
+        // java elevator_sim.Main mc [прогонов] [пассажиров] [seed] - пакет независимых прогонов на всех ядрах
+        if (args.length > 0 && "mc".equals(args[0])) {
+            int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+            int passengers = (args.length > 2) ? Integer.parseInt(args[2]) : 500;
+            long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1L;
+            int parallelism = Integer.getInteger("mc.parallelism", Runtime.getRuntime().availableProcessors());
+
+            // сотни прогонов вперемешку в один лог никто читать не будет
+            Logger.setLevel(LogLevel.OFF);
+            MonteCarloRunner mc = new MonteCarloRunner(config, passengers, runs, seed, parallelism);
+            System.out.print(mc.summary(mc.run()));
+            return;
+        }
+
+        // java elevator_sim.Main scale [пассажиров на лифт] - от 16x4 до 300x128, скорость движка и память
+        if (args.length > 0 && "scale".equals(args[0])) {
+            int perCar = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+            Logger.setLevel(LogLevel.OFF);
+            new ScalingHarness(config, perCar).run(System.out);
+            return;
         }
-        Dispatcher dispatcher = new Dispatcher(elevators);
+
+        Logger.logLine("Начало симуляции", "этажи", config.floors, "лифты", config.elevators);
+        // KPI видны в JConsole пока идет прогон, сводка печатается в конце
+        SimMetrics.global().register("threaded");
+        List<Elevator> elevators = Elevator.fleet(config);
+        // -Dsim.runtime=loop: лифты шагают на общем пуле вместо потока на каждый
+        ElevatorLoop loop = null;
+        if ("loop".equals(System.getProperty("sim.runtime"))) {
+            loop = new ElevatorLoop(elevators);
+            loop.start();
+        } else {
+            for (Elevator e : elevators) e.start();
+        }
+        RequestDispatcher dispatcher = RequestDispatcher.create(elevators, config);
         dispatcher.start();
+        TelemetryServer telemetry = TelemetryServer.fromProperty(elevators, SimMetrics.global());
         sleepMs(1000);
-        PassengerGenerator gen = new PassengerGenerator(dispatcher, elevators, Config.FLOORS, Config.MAX_PASSENGERS);
+        // java elevator_sim.Main [пассажиров] - без ограничения на число одновременных поездок
+        int passengers = (args.length > 0) ? Integer.parseInt(args[0]) : Config.MAX_PASSENGERS;
+        PassengerGenerator gen = new PassengerGenerator(dispatcher, elevators, config, passengers);
+        TraceWriter recorder = openRecorder(SimClock.REAL);
+        TraceReader replay = openReplay();
+        if (recorder != null) gen.recordTo(recorder);
+        if (replay != null) gen.replayFrom(replay, replaySpeed());
         gen.start();
 
         try {
@@ -30,8 +107,37 @@ public final class Main {
                 sleepMs(500);
             }
         } finally {
+            close(recorder, replay);
+            if (loop != null) loop.close();
+            if (telemetry != null) telemetry.close();
             Logger.logLine("Конец симуляции");
+            Logger.flush();
+            System.out.print(SimMetrics.global().summary());
+        }
+    }
+
+    // -Dtrace.record=файл пишет заявки прогона, -Dtrace.replay=файл проигрывает записанные
+    // -Dtrace.speed=N ускоряет проигрывание в N раз
+    private static TraceWriter openRecorder(SimClock clock) {
+        String path = System.getProperty("trace.record");
+        return (path == null) ? null : new TraceWriter(Path.of(path), clock);
+    }
+
+    private static TraceReader openReplay() {
+        String path = System.getProperty("trace.replay");
+        return (path == null) ? null : new TraceReader(Path.of(path));
+    }
+
+    private static double replaySpeed() {
+        return Double.parseDouble(System.getProperty("trace.speed", "1"));
+    }
+
+    private static void close(TraceWriter recorder, TraceReader replay) {
+        if (recorder != null) {
+            Logger.logLine("Трасса записана", "записи", recorder.records());
+            recorder.close();
         }
+        if (replay != null) replay.close();
     }
 
     private static void sleepMs(long ms) {
@@ -0,0 +1,217 @@
+package elevator_sim;
+
+import elevator_sim.metrics.SimMetrics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// параметры одного прогона; Config - значения по умолчанию для всей программы,
+// а SimConfig свой у каждой симуляции, поэтому много прогонов живут рядом и не мешают друг другу
+public final class SimConfig {
+
+    // группа одинаковых лифтов: сколько кабин и на сколько человек
+    public static final class Bank {
+        public final int cars;
+        public final int capacity;
+
+        public Bank(int cars, int capacity) {
+            if (cars < 1) throw new IllegalArgumentException("В группе нет лифтов: " + cars);
+            if (capacity < 1) throw new IllegalArgumentException("Вместимость: " + capacity);
+            this.cars = cars;
+            this.capacity = capacity;
+        }
+    }
+
+    public final int floors;
+    public final int elevators;
+    // вместимость первой группы, для одной группы - всех лифтов
+    public final int capacity;
+    public final List<Bank> banks;
+    public final double floorTravelTime;
+    public final double doorOpenTime;
+    public final double doorCloseTime;
+    // пассажиров в секунду
+    public final double arrivalRate;
+    // куда лифты этого прогона пишут KPI; null - общий SimMetrics.global() потокового режима
+    private final SimMetrics metrics;
+
+    public SimConfig(int floors, int elevators, int capacity, double floorTravelTime,
+                     double doorOpenTime, double doorCloseTime, double arrivalRate) {
+        this(floors, List.of(new Bank(elevators, capacity)), floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate);
+    }
+
+    public SimConfig(int floors, List<Bank> banks, double floorTravelTime,
+                     double doorOpenTime, double doorCloseTime, double arrivalRate) {
+        this(floors, banks, floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate, null);
+    }
+
+    private SimConfig(int floors, List<Bank> banks, double floorTravelTime,
+                      double doorOpenTime, double doorCloseTime, double arrivalRate, SimMetrics metrics) {
+        if (floors < 2) throw new IllegalArgumentException("Этажей меньше двух: " + floors);
+        if (banks.isEmpty()) throw new IllegalArgumentException("Нет ни одной группы лифтов");
+        if (arrivalRate <= 0) throw new IllegalArgumentException("Интенсивность: " + arrivalRate);
+
+        int cars = 0;
+        for (Bank b : banks) cars += b.cars;
+
+        this.floors = floors;
+        this.elevators = cars;
+        this.capacity = banks.get(0).capacity;
+        this.banks = List.copyOf(banks);
+        this.floorTravelTime = floorTravelTime;
+        this.doorOpenTime = doorOpenTime;
+        this.doorCloseTime = doorCloseTime;
+        this.arrivalRate = arrivalRate;
+        this.metrics = metrics;
+    }
+
+    private static final SimConfig DEFAULTS = new SimConfig(Config.FLOORS, Config.ELEVATORS, Config.CAPACITY,
+            Config.FLOOR_TRAVEL_TIME, Config.DOOR_OPEN_TIME, Config.DOOR_CLOSE_TIME, Config.ARRIVAL_RATE);
+
+    public static SimConfig defaults() {
+        return DEFAULTS;
+    }
+
+    // -Dsim.config=файл.properties, без свойства - значения из Config
+    public static SimConfig fromProperty() {
+        String path = System.getProperty("sim.config");
+        return (path == null) ? DEFAULTS : load(Path.of(path));
+    }
+
+    // floors, elevators, capacity, arrival.rate, floor.travel.time, door.open.time, door.close.time
+    // группы лифтов: bank.1.cars, bank.1.capacity, bank.2.cars ... (тогда elevators и capacity не нужны)
+    // чего нет в файле - берется из Config
+    public static SimConfig load(Path path) {
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            p.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int floors = intProp(p, "floors", Config.FLOORS);
+        List<Bank> banks = new ArrayList<>();
+        for (int i = 1; p.containsKey("bank." + i + ".cars"); i++) {
+            banks.add(new Bank(intProp(p, "bank." + i + ".cars", 0),
+                    intProp(p, "bank." + i + ".capacity", Config.CAPACITY)));
+        }
+        if (banks.isEmpty()) {
+            banks.add(new Bank(intProp(p, "elevators", Config.ELEVATORS), intProp(p, "capacity", Config.CAPACITY)));
+        }
+
+        return new SimConfig(floors, banks,
+                doubleProp(p, "floor.travel.time", Config.FLOOR_TRAVEL_TIME),
+                doubleProp(p, "door.open.time", Config.DOOR_OPEN_TIME),
+                doubleProp(p, "door.close.time", Config.DOOR_CLOSE_TIME),
+                doubleProp(p, "arrival.rate", Config.ARRIVAL_RATE));
+    }
+
+    private static int intProp(Properties p, String key, int def) {
+        String v = p.getProperty(key);
+        if (v == null) return def;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверное значение " + key + "=" + v, e);
+        }
+    }
+
+    private static double doubleProp(Properties p, String key, double def) {
+        String v = p.getProperty(key);
+        if (v == null) return def;
+        try {
+            return Double.parseDouble(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверное значение " + key + "=" + v, e);
+        }
+    }
+
+    public SimConfig withFloors(int floors) {
+        return new SimConfig(floors, banks, floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate, metrics);
+    }
+
+    // группы сохраняются: кабины делятся между ними в прежней пропорции (наибольшими остатками),
+    // в каждой остается хотя бы одна
+    public SimConfig withElevators(int elevators) {
+        int n = banks.size();
+        if (elevators < n) {
+            throw new IllegalArgumentException("Лифтов " + elevators + " меньше, чем групп: " + n);
+        }
+
+        int[] cars = new int[n];
+        double[] rest = new double[n];
+        int given = 0;
+        for (int i = 0; i < n; i++) {
+            double share = (double) banks.get(i).cars * (elevators - n) / this.elevators;
+            cars[i] = 1 + (int) share;
+            rest[i] = share - (int) share;
+            given += cars[i];
+        }
+        while (given < elevators) {
+            int best = 0;
+            for (int i = 1; i < n; i++) {
+                if (rest[i] > rest[best]) best = i;
+            }
+            cars[best]++;
+            rest[best] = -1.0;
+            given++;
+        }
+
+        List<Bank> scaled = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) scaled.add(new Bank(cars[i], banks.get(i).capacity));
+        return new SimConfig(floors, scaled, floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate, metrics);
+    }
+
+    // группы сохраняются, вместимость ставится в каждой
+    public SimConfig withCapacity(int capacity) {
+        List<Bank> resized = new ArrayList<>(banks.size());
+        for (Bank b : banks) resized.add(new Bank(b.cars, capacity));
+        return new SimConfig(floors, resized, floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate, metrics);
+    }
+
+    public SimConfig withArrivalRate(double arrivalRate) {
+        return new SimConfig(floors, banks, floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate, metrics);
+    }
+
+    // свои метрики прогона: лифты регистрируют статистику в них, а не в общем реестре
+    public SimConfig withMetrics(SimMetrics metrics) {
+        return new SimConfig(floors, banks, floorTravelTime, doorOpenTime, doorCloseTime, arrivalRate, metrics);
+    }
+
+    public SimMetrics metrics() {
+        return (metrics != null) ? metrics : SimMetrics.global();
+    }
+
+    // вместимость лифта по его номеру в парке (0..elevators-1), группы идут подряд
+    public int capacityOf(int index) {
+        for (Bank b : banks) {
+            if (index < b.cars) return b.capacity;
+            index -= b.cars;
+        }
+        throw new IndexOutOfBoundsException("Нет лифта с номером " + index);
+    }
+
+    // стартовые этажи равномерно по высоте, чтобы лифты не стояли все в одной точке
+    public int startFloor(int index) {
+        if (elevators == 1) return 1;
+        return 1 + (int) Math.round((double) index * (floors - 1) / (elevators - 1));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("этажей=" + floors + ", лифтов=" + elevators);
+        if (banks.size() == 1) {
+            sb.append(", вместимость=").append(capacity);
+        } else {
+            for (Bank b : banks) sb.append(", группа ").append(b.cars).append("x").append(b.capacity);
+        }
+        return sb.append(", пассажиров/с=").append(arrivalRate).toString();
+    }
+}
@@ -0,0 +1,18 @@
+package elevator_sim.dispatcher;
+
+public enum DispatchStrategy {
+    // классика: на этаже только кнопка направления, цель пассажир жмет уже в кабине
+    SCORING,
+    // цель вводится на этаже, диспетчер собирает в один лифт едущих в одни и те же места
+    DESTINATION;
+
+    // -Ddispatch.strategy=scoring|destination
+    static DispatchStrategy fromProperty() {
+        String s = System.getProperty("dispatch.strategy", "scoring");
+        try {
+            return valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return SCORING;
+        }
+    }
+}
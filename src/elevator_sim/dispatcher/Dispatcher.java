@@ -1,92 +1,580 @@
 package elevator_sim.dispatcher;
+import elevator_sim.Config;
+import elevator_sim.metrics.SimMetrics;
 import elevator_sim.models.*;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
 import elevator_sim.utils.Logger;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public final class Dispatcher extends Thread {
+public final class Dispatcher extends Thread implements RequestDispatcher {
 
-    private final BlockingQueue<Object> q = new LinkedBlockingQueue<>();
+    // deque, чтобы соседний шард мог забрать вызов с хвоста
+    private final BlockingDeque<Object> q = new LinkedBlockingDeque<>();
     private final List<Elevator> elevators;
     private final Map<Integer, Elevator> byId = new HashMap<>();
+    // номер лифта -> его индекс в elevators, планах и таблице парка
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    // планы маршрутов по лифтам, таблица парка и модель ETA поверх них, трогает только поток этого диспетчера
+    private final RoutePlan[] plans;
+    private final FleetTable fleet;
+    private final EtaModel eta = new EtaModel();
+
+    // каждый следующий вызов на тот же лифт в одном пакете дороже, иначе при наплыве все уходят в одну кабину
+    // штрафы в секундах, как и ETA
+    private static final double SLOT_PENALTY = 4.0;
+    private static final double OVER_CAPACITY_PENALTY = 100.0;
+
+    // пакетный режим: вызовы за окно собираются и назначаются вместе (-Ddispatch.batch=true)
+    private volatile boolean batching = Boolean.getBoolean("dispatch.batch");
+    private volatile DispatchStrategy strategy = DispatchStrategy.fromProperty();
+
+    // вызов по назначению: лишняя остановка для цели пассажира, в долях остановки
+    private static final double EXTRA_STOP = 1.0;
+    // остановка по соседству, пассажир почти по пути
+    private static final double NEARBY_STOP = 0.4;
+
+    // соседние шарды, у которых можно забрать работу; пусто - обычный одиночный диспетчер
+    private List<Dispatcher> neighbours = List.of();
+    // поток шарда ждет на пустой очереди; сосед, у которого очередь доросла до порога, будит его этой меткой
+    private static final Object STEAL = new Object();
+    private final AtomicBoolean idle = new AtomicBoolean();
+
+    private volatile SimMetrics metrics = SimMetrics.global();
+
+    // переназначение: вызов уходит другому лифту, если тот заберет пассажира заметно раньше
+    // (-Ddispatch.reassign=false выключает)
+    private volatile boolean reassigning = !"false".equals(System.getProperty("dispatch.reassign"));
+    // принятые, но еще не подобранные вызовы; трогает только поток этого диспетчера
+    private final List<HallRequest> open = new ArrayList<>();
+    private long lastRebalance = System.nanoTime();
+    // сколько секунд должен выиграть другой лифт, чтобы вызов не метался туда-сюда
+    private static final double REASSIGN_GAIN = 10.0;
+    // и больше стольких переездов у одного вызова не бывает - иначе при перегрузке он скачет по лифтам
+    private static final int MAX_REASSIGNMENTS = 2;
+
+    // парковка свободных лифтов по выученному спросу (-Ddispatch.parking=false выключает)
+    private volatile boolean parking = !"false".equals(System.getProperty("dispatch.parking"));
+    private final ParkingStrategy demand = new ParkingStrategy();
+    private ParkingStrategy.Pattern pattern = ParkingStrategy.Pattern.UNKNOWN;
+    private long lastPark = System.nanoTime();
+
+    // одна кнопка на этаж и направление: открытые вызовы по ключу этаж/цель/направление
+    // (-Ddispatch.coalesce=false - каждый пассажир отдельным вызовом)
+    private volatile boolean coalescing = !"false".equals(System.getProperty("dispatch.coalesce"));
+    private final Map<Long, HallRequest> calls = new ConcurrentHashMap<>();
+    // больше, чем влезает в самую маленькую кабину, за одним вызовом не стоит - дальше новый вызов
+    private final int maxRiders;
 
     public Dispatcher(List<Elevator> elevators) {
-        super("Диспетчер");
+        this("Диспетчер", elevators);
+    }
+
+    public Dispatcher(String name, List<Elevator> elevators) {
+        super(name);
         setDaemon(true);
 
         this.elevators = elevators;
-        for (Elevator e : elevators) {
+        plans = new RoutePlan[elevators.size()];
+        fleet = new FleetTable(elevators.size());
+        int minCapacity = Integer.MAX_VALUE;
+        for (int i = 0; i < elevators.size(); i++) {
+            Elevator e = elevators.get(i);
             byId.put(e.id, e);
+            slots.put(e.id, i);
+            plans[i] = new RoutePlan();
+            minCapacity = Math.min(minCapacity, e.capacity);
         }
+        maxRiders = Math.max(1, minCapacity);
     }
 
+    @Override
     public void submitRequest(Object request) {
+        if (request instanceof HallRequest) {
+            HallRequest req = (HallRequest) request;
+            metrics.submitted(req);
+            if (coalescing && joinCall(req)) {
+                metrics.coalesced();
+                return;
+            }
+        }
         q.offer(request);
+        int depth = q.size();
+        metrics.queueDepth(depth);
+        if (depth >= Config.STEAL_THRESHOLD) {
+            for (Dispatcher d : neighbours) d.wakeToSteal();
+        }
     }
 
-    //чем меньше score тем лучше типа стоимость назначения
-    private ElevatorScore score(Elevator elevator, int reqFloor, Direction reqDirection) {
-        ElevatorState st = elevator.getStateSnapshot();
+    // метка уходит только ждущему потоку и одна: в событийном режиме потоков нет, и очередь меток не видит
+    private void wakeToSteal() {
+        if (idle.compareAndSet(true, false)) q.offer(STEAL);
+    }
+
+    // к открытому вызову с того же этажа в ту же сторону (и с той же целью) пассажир просто присоединяется
+    // true - присоединился, очередь и диспетчер его не видят; false - он сам новый вызов
+    private boolean joinCall(HallRequest req) {
+        long key = callKey(req);
+        while (true) {
+            HallRequest lead = calls.putIfAbsent(key, req);
+            if (lead == null) return false;
+            if (lead.join(req, maxRiders)) {
+                // лифт уже едет за этим вызовом - пусть план покажет, что людей больше
+                Elevator e = byId.get(req.assignedElevatorId);
+                if (e != null) e.hallRequestJoined(lead);
+                return true;
+            }
+            // лифт уже забрал тот вызов - кнопка гаснет, этот пассажир зажигает ее снова
+            if (calls.replace(key, lead, req)) return false;
+        }
+    }
+
+    private static long callKey(HallRequest req) {
+        return ((long) req.floor << 32) | ((long) req.targetFloor << 1) | (req.direction == Direction.DOWN ? 1 : 0);
+    }
+
+    @Override
+    public void setMetrics(SimMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    @Override
+    public boolean isBatching() {
+        return batching;
+    }
+
+    @Override
+    public boolean isReassigning() {
+        return reassigning;
+    }
+
+    @Override
+    public void setReassigning(boolean reassigning) {
+        this.reassigning = reassigning;
+    }
+
+    @Override
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    @Override
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    @Override
+    public boolean isParking() {
+        return parking;
+    }
+
+    @Override
+    public void setParking(boolean parking) {
+        this.parking = parking;
+    }
 
-        int curr = st.currentFloor;
-        int dist = Math.abs(curr - reqFloor);
+    @Override
+    public DispatchStrategy getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public void setStrategy(DispatchStrategy strategy) {
+        this.strategy = strategy;
+    }
 
-        double score = (double) dist;
-        // небольшой штраф за уже набранные цели и загрузку чтобы не забивать один лифт
-        int targets = st.targets.size();
-        int load = elevator.getLoad();
-        score += targets * 1.5;
-        if (elevator.isFull()) score += 100;
-        if (st.status == ElevatorStatus.IDLE) {
-            //ничего не добавляем, просто dist
-            score *= 1.0;
-        } else {
-            // если лифт уже едет в ту же сторону и этаж по пути это выгоднее
-            if (st.direction == Direction.UP) {
-                if (reqDirection == Direction.UP && reqFloor >= curr) score *= 0.5;
-                else score += 40;
-            } else if (st.direction == Direction.DOWN) {
-                if (reqDirection == Direction.DOWN && reqFloor <= curr) score *= 0.5;
-                else score += 40;
+    void setNeighbours(List<Dispatcher> neighbours) {
+        this.neighbours = List.copyOf(neighbours);
+    }
+
+    public int backlog() {
+        return q.size();
+    }
+
+    // отдаем соседу самый свежий вызов с этажа; кнопки из кабины привязаны к своим лифтам и не отдаются
+    // кнопка этажа уходит вместе с вызовом: дальше его ведет вор, новые пассажиры здесь зажигают новый вызов
+    HallRequest stealHallRequest() {
+        Iterator<Object> it = q.descendingIterator();
+        while (it.hasNext()) {
+            Object req = it.next();
+            if (req instanceof HallRequest && q.removeLastOccurrence(req)) {
+                HallRequest hall = (HallRequest) req;
+                calls.remove(callKey(hall), hall);
+                return hall;
             }
         }
+        return null;
+    }
 
-        // чуть приоритетим 1 этаж важнее, например вход
-        if (reqFloor == 1) score *= 0.8;
+    // берем у самого загруженного соседа, если у него в очереди больше порога
+    private HallRequest steal() {
+        Dispatcher victim = null;
+        int most = Config.STEAL_THRESHOLD - 1;
+        for (Dispatcher d : neighbours) {
+            int b = d.backlog();
+            if (b > most) {
+                most = b;
+                victim = d;
+            }
+        }
+        if (victim == null) return null;
+
+        HallRequest req = victim.stealHallRequest();
+        if (req == null) return null;
+
+        Logger.logLine("Вызов перехвачен", "номер", req.номер, "у", victim.getName());
+        return req;
+    }
 
-        return new ElevatorScore(elevator.id, score);
+    // метка от соседа превращается в украденный у него вызов (или null, если его уже разобрали)
+    private Object unmark(Object req) {
+        return (req == STEAL) ? steal() : req;
     }
 
-    private Elevator chooseElevator(int floor, Direction direction) {
-        List<ElevatorScore> scores = new ArrayList<>();
-        for (Elevator e : elevators) scores.add(score(e, floor, direction));
+    // следующая заявка: своя, а если своих нет - чужая; null если и красть нечего
+    // ждем не дольше интервала переназначения, чтобы цикл успевал его делать; шард с соседями
+    // не опрашивает их по таймеру, а спит на своей очереди, пока сосед не пришлет метку STEAL
+    private Object nextRequest() throws InterruptedException {
+        if (neighbours.isEmpty()) return q.poll(Config.REASSIGN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        Object req = q.poll();
+        if (req != null) return unmark(req);
+
+        // сначала объявляем, что ждем, потом смотрим соседей: порог, перейденный между ними, не потеряется
+        idle.set(true);
+        try {
+            req = steal();
+            if (req == null) req = q.poll(Config.REASSIGN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            idle.set(false);
+        }
+        return unmark(req);
+    }
 
-        scores.sort(Comparator.comparingDouble(x -> x.score));
+    //чем меньше score тем лучше типа стоимость назначения
+    // секунды: когда лифт доберется до вызова по своему маршруту и на сколько задержит уже принятых
+    private double cost(RoutePlan plan, int reqFloor, Direction reqDirection, int targetFloor) {
+        double score = eta.insertionCost(plan, reqFloor, reqDirection);
+        if (plan.load >= plan.capacity) score += OVER_CAPACITY_PENALTY;
 
-        // минимальная стоимость
-        return byId.get(scores.get(0).elevatorId);
+        if (strategy == DispatchStrategy.DESTINATION && targetFloor > 0) {
+            score += destinationCost(plan, targetFloor);
+        }
+        return score;
     }
 
-    private void handleHall(HallRequest req) {
+    private RoutePlan plan(Elevator elevator) {
+        return plan(slots.get(elevator.id));
+    }
+
+    // план лифта перечитывается, только если с прошлого раза лифт что-то поменял; строка таблицы парка вместе с ним
+    private RoutePlan plan(int i) {
+        RoutePlan p = plans[i];
+        Elevator e = elevators.get(i);
+        if (p.version != e.planVersion()) {
+            e.readPlan(p);
+            fleet.update(i, p);
+        }
+        return p;
+    }
+
+    // все планы свежие, и таблица парка с ними
+    private void refreshPlans() {
+        for (int i = 0; i < plans.length; i++) plan(i);
+    }
+
+    // группировка по целям: лифт, который и так остановится на этаже пассажира, почти ничего не теряет
+    // иначе лишняя остановка задержит всех, кто едет в кабине
+    private static double destinationCost(RoutePlan p, int targetFloor) {
+        double stops = EXTRA_STOP;
+        if (p.destinations.contains(targetFloor)) {
+            stops = 0.0;
+        } else if (p.destinations.contains(targetFloor - 1) || p.destinations.contains(targetFloor + 1)) {
+            stops = NEARBY_STOP;
+        }
+        return stops * p.dwellTime() * (1 + p.load);
+    }
+
+    // минимальная стоимость без списков и сортировки: оценки всего парка одним проходом по FleetTable,
+    // точная цена только у лифтов, которые по оценке еще могут выиграть; начинаем с лучшей оценки,
+    // тогда отсекается сразу почти весь парк. При равной цене выигрывает лифт раньше в списке
+    private Elevator chooseElevator(int floor, Direction direction, int targetFloor) {
+        refreshPlans();
+        fleet.lowerBounds(floor, OVER_CAPACITY_PENALTY);
+        double[] bound = fleet.bound;
+        boolean exactBound = strategy != DispatchStrategy.DESTINATION || targetFloor <= 0;
+
+        int best = fleet.argminBound();
+        double bestCost = exact(best, floor, direction, targetFloor, exactBound);
+        for (int i = 0; i < plans.length; i++) {
+            if (bound[i] > bestCost || (bound[i] == bestCost && i >= best)) continue;
+
+            double c = exact(i, floor, direction, targetFloor, exactBound);
+            if (c < bestCost || (c == bestCost && i < best)) {
+                best = i;
+                bestCost = c;
+            }
+        }
+        return elevators.get(best);
+    }
+
+    // какой лифт взял бы вызов прямо сейчас; ничего не назначает и не меняет, метрики не пишет
+    // планы трогает только поток диспетчера, поэтому звать из него или пока он не запущен (событийный режим, бенчмарки)
+    public Elevator preview(HallRequest req) {
+        return chooseElevator(req.floor, req.direction, req.targetFloor);
+    }
+
+    // у лифта без остановок цена совпадает с оценкой, если не надо доплачивать за цель пассажира
+    private double exact(int i, int floor, Direction direction, int targetFloor, boolean exactBound) {
+        if (exactBound && fleet.stops[i] == 0) return fleet.bound[i];
+        return cost(plans[i], floor, direction, targetFloor);
+    }
+
+    private void accepted(HallRequest req) {
         Logger.logLine("Поступил запрос", "номер", req.номер, "этаж", req.floor, "направление", req.direction);
+        demand.observe(req.floor, req.direction, metrics.now());
+    }
 
+    private void handleHall(HallRequest req) {
+        // все, кто стоял за вызовом, ушли, пока он ждал в очереди
+        if (req.riders() == 0) return;
+        accepted(req);
+
+        long t0 = System.nanoTime();
         try {
-            Elevator elevator = chooseElevator(req.floor, req.direction);
+            assign(req, chooseElevator(req.floor, req.direction, req.targetFloor));
+            metrics.decision(System.nanoTime() - t0);
+        } catch (Exception e) {
+            Logger.errorLine("Ошибка диспетчера", "err", String.valueOf(e));
+            req.assignTo(HallRequest.UNASSIGNED); // чтобы пассажиры не зависли навсегда
+        }
+    }
 
-            req.assignedElevatorId = elevator.id;
-            elevator.registerHallRequest(req);
+    private void assign(HallRequest req, Elevator elevator) {
+        elevator.registerHallRequest(req);
+        if (reassigning) open.add(req);
 
-            // сигнал пассажиру лифт назначен
-            req.assignedEvent.countDown();
+        // сигнал пассажирам вызова лифт назначен
+        req.assignTo(elevator.id);
+
+        Logger.logLine("Лифт назначен", "номер", req.номер, "лифт", elevator.id, "этаж", req.floor);
+    }
+
+    // пакет: сначала кнопки из кабин (они меняют маршруты), потом все вызовы с этажей одним решением
+    private void dispatchBatch(List<Object> batch) {
+        List<HallRequest> halls = new ArrayList<>();
+        for (Object req : batch) {
+            if (req instanceof HallRequest) {
+                if (((HallRequest) req).riders() > 0) halls.add((HallRequest) req);
+            } else {
+                dispatch(req);
+            }
+        }
 
-            Logger.logLine("Лифт назначен", "номер", req.номер, "лифт", elevator.id, "этаж", req.floor);
+        if (halls.size() == 1) {
+            handleHall(halls.get(0));
+            return;
+        }
+        if (halls.isEmpty()) return;
+
+        for (HallRequest req : halls) accepted(req);
+
+        long t0 = System.nanoTime();
+        try {
+            assignJointly(halls);
+            metrics.decision(System.nanoTime() - t0);
+            Logger.logLine("Пакет назначен", "вызовы", halls.size());
         } catch (Exception e) {
-            Logger.logLine("Ошибка диспетчера", "err", String.valueOf(e));
-            req.assignedEvent.countDown(); // чтобы пассажир не завис навсегда
+            Logger.errorLine("Ошибка диспетчера", "err", String.valueOf(e));
+            for (HallRequest req : halls) req.assignTo(HallRequest.UNASSIGNED);
         }
     }
 
+    // у каждого лифта столько мест в пакете, сколько у него свободно с учетом уже назначенных вызовов
+    // стоимость места = score лифта + штраф за номер места; решаем задачу о назначениях целиком
+    private void assignJointly(List<HallRequest> halls) {
+        int n = halls.size();
+        int m = elevators.size();
+
+        int[] slotCount = new int[m];
+        int[] free = new int[m];
+        int total = 0;
+        for (int e = 0; e < m; e++) {
+            RoutePlan plan = plan(e);
+            free[e] = Math.max(0, plan.capacity - plan.load - plan.hallCalls);
+            slotCount[e] = Math.min(n, Math.max(1, free[e]));
+            total += slotCount[e];
+        }
+        // мест меньше чем вызовов - добавляем всем по месту сверх вместимости
+        while (total < n) {
+            for (int e = 0; e < m && total < n; e++) {
+                if (slotCount[e] < n) {
+                    slotCount[e]++;
+                    total++;
+                }
+            }
+        }
+
+        int[] colElevator = new int[total];
+        double[][] cost = new double[n][total];
+        int col = 0;
+        for (int e = 0; e < m; e++) {
+            for (int k = 0; k < slotCount[e]; k++, col++) colElevator[col] = e;
+        }
+
+        for (int i = 0; i < n; i++) {
+            HallRequest req = halls.get(i);
+            col = 0;
+            for (int e = 0; e < m; e++) {
+                double base = cost(plans[e], req.floor, req.direction, req.targetFloor);
+                for (int k = 0; k < slotCount[e]; k++, col++) {
+                    double c = base + k * SLOT_PENALTY;
+                    if (k >= free[e]) c += OVER_CAPACITY_PENALTY;
+                    cost[i][col] = c;
+                }
+            }
+        }
+
+        int[] rowToCol = HungarianSolver.solve(cost);
+        for (int i = 0; i < n; i++) {
+            assign(halls.get(i), elevators.get(colElevator[rowToCol[i]]));
+        }
+    }
+
+    // пересмотр открытых вызовов: свой лифт стоит столько, сколько ему еще ехать до пассажира,
+    // чужой - полную цену вставки; вызов переезжает, только если выигрыш больше REASSIGN_GAIN
+    @Override
+    public int rebalance() {
+        int moved = 0;
+        ListIterator<HallRequest> it = open.listIterator();
+        while (it.hasNext()) {
+            HallRequest req = it.next();
+            // кабина увезла не всех - оставшиеся снова ждут, их вызов можно отдать другому лифту,
+            // а новые пассажиры присоединяются уже к нему
+            HallRequest rest = (req.isPickedUp()) ? req.remainder() : null;
+            if (rest != null) {
+                calls.replace(callKey(req), req, rest);
+                it.set(rest);
+                req = rest;
+            }
+
+            Elevator current = byId.get(req.assignedElevatorId);
+            if (req.isPickedUp() || req.riders() == 0 || current == null || req.reassignments >= MAX_REASSIGNMENTS) {
+                it.remove();
+                continue;
+            }
+
+            RoutePlan plan = plan(current);
+            double stay = eta.eta(plan, req.floor, req.direction);
+            if (plan.load >= plan.capacity) stay += OVER_CAPACITY_PENALTY;
+
+            // дешевле оценки лифт не возьмет: кому она не дает выиграть, точную цену не считаем
+            refreshPlans();
+            fleet.lowerBounds(req.floor, OVER_CAPACITY_PENALTY);
+            Elevator best = null;
+            double bestCost = stay - REASSIGN_GAIN;
+            for (int i = 0; i < plans.length; i++) {
+                Elevator e = elevators.get(i);
+                if (e == current || fleet.bound[i] >= bestCost) continue;
+                double cost = cost(plans[i], req.floor, req.direction, req.targetFloor);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = e;
+                }
+            }
+            if (best == null) continue;
+
+            // снятие и посадка под одной блокировкой лифта: либо пассажир уже сел, либо вызов наш
+            if (!current.unregisterHallRequest(req)) {
+                it.remove();
+                continue;
+            }
+            req.assignTo(best.id);
+            req.reassignments++;
+            best.registerHallRequest(req);
+            metrics.reassigned();
+            moved++;
+
+            Logger.logLine("Вызов переназначен", "номер", req.номер, "был", current.id, "лифт", best.id);
+        }
+        return moved;
+    }
+
+    private void maybeRebalance() {
+        if (!reassigning) return;
+        long now = System.nanoTime();
+        if (now - lastRebalance < TimeUnit.MILLISECONDS.toNanos(Config.REASSIGN_INTERVAL_MS)) return;
+        lastRebalance = now;
+        rebalance();
+    }
+
+    // парковочные этажи делятся между лифтами: занятый лифт закрывает ближайший к себе
+    // (едущий на парковку - свой), остальные этажи по порядку достаются свободным, тоже по порядку этажей
+    @Override
+    public int parkIdle() {
+        long now = metrics.now();
+        ParkingStrategy.Pattern p = demand.pattern(now);
+        if (p != pattern) {
+            pattern = p;
+            Logger.logLine("Режим трафика", "режим", p);
+        }
+
+        int[] floors = demand.parkingFloors(elevators.size(), now);
+        if (floors == null) return 0;
+
+        List<Integer> free = new ArrayList<>(floors.length);
+        for (int f : floors) free.add(f);
+        List<Elevator> idle = new ArrayList<>();
+        for (Elevator e : elevators) {
+            RoutePlan plan = plan(e);
+            int parkedAt = e.getParkFloor();
+            if (parkedAt < 0 && plan.status == ElevatorStatus.IDLE && plan.load == 0
+                    && plan.stops.isEmpty() && plan.hallCalls == 0) {
+                idle.add(e);
+            } else {
+                free.remove(nearest(free, parkedAt > 0 ? parkedAt : plan.currentFloor));
+            }
+        }
+        idle.sort(Comparator.comparingInt(e -> plan(e).currentFloor));
+
+        int moved = 0;
+        for (int i = 0; i < idle.size(); i++) {
+            Elevator e = idle.get(i);
+            int floor = free.get(i);
+            if (floor == plan(e).currentFloor || !e.park(floor)) continue;
+
+            moved++;
+            Logger.logLine("Парковка", "лифт", e.id, "этаж", floor);
+        }
+        return moved;
+    }
+
+    private static int nearest(List<Integer> floors, int floor) {
+        int best = 0;
+        for (int i = 1; i < floors.size(); i++) {
+            if (Math.abs(floors.get(i) - floor) < Math.abs(floors.get(best) - floor)) best = i;
+        }
+        return best;
+    }
+
+    private void maybePark() {
+        if (!parking) return;
+        long now = System.nanoTime();
+        if (now - lastPark < TimeUnit.MILLISECONDS.toNanos(Config.PARKING_INTERVAL_MS)) return;
+        lastPark = now;
+        parkIdle();
+    }
+
     private void handleCar(CarRequest req) {
         Logger.logLine("Запрос из лифта", "лифт", req.elevatorId, "этаж", req.targetFloor, "номер", req.номер);
 
@@ -96,19 +584,162 @@ public final class Dispatcher extends Thread {
         }
     }
 
+    private void dispatch(Object req) {
+        if (req instanceof HallRequest) handleHall((HallRequest) req);
+        else if (req instanceof CarRequest) handleCar((CarRequest) req);
+    }
+
+    // одиночный диспетчер пишется как один шард, чтобы снимок с шардами не прочитался без них
     @Override
-    public void run() {
-        Logger.logLine("Запуск диспетчера");
+    public void save(SnapshotWriter out) {
+        out.putInt(1);
+        saveShard(out);
+    }
 
-        while (true) {
+    @Override
+    public void restore(SnapshotReader in) {
+        int n = in.getInt();
+        if (n != 1) throw new IllegalStateException("Снимок на " + n + " шардов, а диспетчер один");
+        restoreShard(in);
+    }
+
+    // режимы, очередь, открытые вызовы, кнопки этажей и выученный спрос
+    // планы лифтов не пишем - это кэш, после восстановления он перечитается по planVersion
+    void saveShard(SnapshotWriter out) {
+        out.putBoolean(batching);
+        out.putByte(strategy.ordinal());
+        out.putBoolean(reassigning);
+        out.putBoolean(parking);
+        out.putBoolean(coalescing);
+
+        out.putInt(q.size());
+        for (Object req : q) {
+            if (req instanceof HallRequest) {
+                out.putByte(RequestType.HALL.ordinal());
+                out.putRef((HallRequest) req);
+            } else {
+                CarRequest car = (CarRequest) req;
+                out.putByte(RequestType.CAR.ordinal());
+                out.putInt(car.elevatorId);
+                out.putInt(car.targetFloor);
+                out.putInt(car.passenger);
+                out.putLong(car.номер);
+            }
+        }
+
+        out.putInt(open.size());
+        for (HallRequest req : open) out.putRef(req);
+        out.putInt(calls.size());
+        for (Map.Entry<Long, HallRequest> e : calls.entrySet()) {
+            out.putLong(e.getKey());
+            out.putRef(e.getValue());
+        }
+
+        out.putByte(pattern.ordinal());
+        demand.save(out);
+    }
+
+    void restoreShard(SnapshotReader in) {
+        batching = in.getBoolean();
+        strategy = DispatchStrategy.values()[in.getByte()];
+        reassigning = in.getBoolean();
+        parking = in.getBoolean();
+        coalescing = in.getBoolean();
+
+        q.clear();
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            if (in.getByte() == RequestType.HALL.ordinal()) {
+                q.add(in.getRef());
+            } else {
+                int elevatorId = in.getInt();
+                int target = in.getInt();
+                int passenger = in.getInt();
+                q.add(new CarRequest(elevatorId, target, passenger, in.getLong()));
+            }
+        }
+
+        open.clear();
+        n = in.getInt();
+        for (int i = 0; i < n; i++) open.add(in.getRef());
+        calls.clear();
+        n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            long key = in.getLong();
+            calls.put(key, in.getRef());
+        }
+
+        pattern = ParkingStrategy.Pattern.values()[in.getByte()];
+        demand.restore(in);
+        for (RoutePlan p : plans) p.version = -1;
+    }
+
+    // событийный режим: поток диспетчера не запущен, очередь разбирает цикл симуляции
+    @Override
+    public int drainPending() {
+        if (batching) {
+            // окно в модельном времени держит симуляция: событие DRAIN стоит через DISPATCH_BATCH_WINDOW_MS
+            // после первой заявки пакета, здесь забираем все, что накопилось за окно
+            List<Object> batch = new ArrayList<>();
+            q.drainTo(batch);
+            if (!batch.isEmpty()) dispatchBatch(batch);
+            return batch.size();
+        }
+
+        int n = 0;
+        Object req;
+        while ((req = q.poll()) != null) {
             try {
-                Object req = q.take();
+                dispatch(req);
+            } catch (Exception e) {
+                Logger.errorLine("Критическая ошибка", "err", String.valueOf(e));
+            }
+            n++;
+        }
+        return n;
+    }
+
+    // метка STEAL, пришедшая за окно, тоже становится вызовом соседа в этом же пакете
+    private List<Object> takeBatch() throws InterruptedException {
+        List<Object> batch = new ArrayList<>();
+        Object first = nextRequest();
+        if (first == null) return batch;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.DISPATCH_BATCH_WINDOW_MS);
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) break;
+            Object next = q.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            next = unmark(next);
+            if (next != null) batch.add(next);
+        }
+        List<Object> rest = new ArrayList<>();
+        q.drainTo(rest);
+        for (Object req : rest) {
+            req = unmark(req);
+            if (req != null) batch.add(req);
+        }
+        return batch;
+    }
 
-                if (req instanceof HallRequest) handleHall((HallRequest) req);
-                else if (req instanceof CarRequest) handleCar((CarRequest) req);
+    @Override
+    public void run() {
+        Logger.logLine("Запуск диспетчера", "лифты", elevators.size());
 
+        while (true) {
+            try {
+                if (batching) {
+                    dispatchBatch(takeBatch());
+                } else {
+                    Object req = nextRequest();
+                    if (req != null) dispatch(req);
+                }
+                maybeRebalance();
+                maybePark();
             } catch (Exception e) {
-                Logger.logLine("Критическая ошибка", "err", String.valueOf(e));
+                Logger.errorLine("Критическая ошибка", "err", String.valueOf(e));
             }
         }
     }
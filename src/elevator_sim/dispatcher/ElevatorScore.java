@@ -1,10 +0,0 @@
-package elevator_sim.dispatcher;
-
-public final class ElevatorScore {
-    public final int elevatorId;
-    public final double score;
-    public ElevatorScore(int elevatorId, double score) {
-        this.elevatorId = elevatorId;
-        this.score = score;
-    }
-}
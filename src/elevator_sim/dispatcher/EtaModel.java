@@ -0,0 +1,105 @@
+package elevator_sim.dispatcher;
+
+import elevator_sim.models.Direction;
+import elevator_sim.models.ElevatorStatus;
+import elevator_sim.models.RoutePlan;
+
+// время, за которое лифт доберется до вызова, если пройдет свой маршрут LOOK со всеми остановками,
+// и цена вставки новой остановки для тех, кого он уже везет или обещал забрать
+// маршрут считаем в развернутых координатах x = s * этаж: там лифт всегда едет вверх (s = +1 или -1)
+// и случаи "вверх"/"вниз" не приходится писать дважды
+// один экземпляр на диспетчер - поля ниже это черновик последнего расчета
+final class EtaModel {
+    // сколько остановок лифт сделает до посадки нового пассажира
+    private int stopsBefore;
+    // на сколько этажей удлинился разворот ради нового вызова
+    private int detourFloors;
+
+    // секунды до посадки пассажира с этажа floor, который едет в сторону dir
+    double eta(RoutePlan p, int floor, Direction dir) {
+        stopsBefore = 0;
+        detourFloors = 0;
+
+        int c = p.currentFloor;
+        // двери уже открыты - сначала их надо закрыть
+        double dwellNow = (p.status == ElevatorStatus.DOORS_OPEN) ? p.doorCloseTime : 0.0;
+        if (p.stops.isEmpty()) return dwellNow + Math.abs(floor - c) * p.travelTime;
+
+        int s = sweepSign(p);
+        int maxStop = p.stops.prevSetBit(Integer.MAX_VALUE);
+        int minStop = p.stops.nextSetBit(0);
+        // крайние точки хода в развернутых координатах: докуда лифт доедет и где развернется
+        int top = (s > 0) ? Math.max(maxStop, c) : -Math.min(minStop, c);
+        int bottom = (s > 0) ? Math.min(minStop, c) : -Math.max(maxStop, c);
+
+        int x = s * c;
+        int xf = s * floor;
+        boolean sameWay = dir.step() * s > 0;
+        boolean stopAtFloor = p.stops.contains(floor);
+        int dist;
+
+        if (sameWay && xf >= x) {
+            // по пути: доезжаем, останавливаясь на всех остановках между
+            dist = xf - x;
+            stopsBefore = count(p, s, x + 1, xf - 1);
+        } else if (!sameWay) {
+            // встречный вызов берем после разворота наверху хода
+            int turn = Math.max(top, xf);
+            detourFloors = Math.max(0, xf - top);
+            if (xf >= x) {
+                dist = (turn - x) + (turn - xf);
+                stopsBefore = count(p, s, x + 1, turn);
+                // остановка на этаже вызова - это и есть посадка; если лифт на нем стоит, ее не считали
+                if (turn == xf && stopAtFloor && xf > x) stopsBefore--;
+            } else {
+                dist = (top - x) + (top - xf);
+                stopsBefore = count(p, s, x + 1, top) + count(p, s, xf + 1, x - 1);
+            }
+        } else {
+            // попутный, но уже проехали: наверх, вниз до разворота и снова вверх
+            int low = Math.min(bottom, xf);
+            detourFloors = Math.max(0, bottom - xf);
+            dist = (top - x) + (top - low) + (xf - low);
+            stopsBefore = count(p, s, x + 1, top) + count(p, s, low, x - 1);
+            if (low == xf && stopAtFloor) stopsBefore--;
+        }
+
+        return dwellNow + dist * p.travelTime + stopsBefore * p.dwellTime();
+    }
+
+    // eta нового пассажира + сколько суммарно потеряют остальные из-за новой остановки
+    double insertionCost(RoutePlan p, int floor, Direction dir) {
+        double cost = eta(p, floor, dir);
+
+        // на этом этаже лифт и так остановится - остальным ничего не стоит
+        if (p.stops.contains(floor)) return cost;
+
+        int total = p.stops.size();
+        if (total == 0) return cost;
+
+        // кого лифт обслужит после новой остановки; людей на остановку считаем поровну
+        int after = Math.max(0, total - stopsBefore);
+        double ridersPerStop = (double) (p.load + p.hallCalls) / total;
+        double delay = p.dwellTime() + 2 * detourFloors * p.travelTime;
+        return cost + after * ridersPerStop * delay;
+    }
+
+    // куда лифт поедет сейчас: по ходу движения, а стоящий - к ближайшей остановке (при равенстве вниз)
+    private static int sweepSign(RoutePlan p) {
+        if (p.direction == Direction.UP) return 1;
+        if (p.direction == Direction.DOWN) return -1;
+
+        int c = p.currentFloor;
+        int above = p.stops.nextSetBit(c);
+        int below = p.stops.prevSetBit(c);
+        if (above < 0) return -1;
+        if (below < 0) return 1;
+        return (above - c < c - below) ? 1 : -1;
+    }
+
+    // остановки в отрезке [a, b] развернутых координат
+    private static int count(RoutePlan p, int s, int a, int b) {
+        if (a > b) return 0;
+        return (s > 0) ? p.stops.count(a, b) : p.stops.count(-b, -a);
+    }
+}
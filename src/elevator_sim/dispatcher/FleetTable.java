@@ -0,0 +1,65 @@
+package elevator_sim.dispatcher;
+
+import elevator_sim.models.ElevatorStatus;
+import elevator_sim.models.RoutePlan;
+
+import java.util.Arrays;
+
+// парк диспетчера в примитивных массивах: лифт с индексом i - i-й элемент каждого массива
+// строка обновляется на месте, когда диспетчер перечитал план лифта (сдвинулся planVersion)
+// по ней одним проходом без ветвлений считается нижняя оценка цены вызова для всего парка;
+// такой цикл по массивам JIT разворачивает и векторизует сам
+final class FleetTable {
+    final int size;
+    final int[] floor;
+    final int[] load;
+    final int[] capacity;
+    // сколько остановок в маршруте; 0 - цена вызова равна оценке
+    final int[] stops;
+    // двери открыты - сначала их закрыть
+    private final double[] dwellNow;
+    private final double[] travel;
+    // нижние оценки последнего lowerBounds
+    final double[] bound;
+
+    FleetTable(int size) {
+        this.size = size;
+        floor = new int[size];
+        load = new int[size];
+        capacity = new int[size];
+        stops = new int[size];
+        dwellNow = new double[size];
+        travel = new double[size];
+        bound = new double[size];
+        // пока план не прочитан, оценка ничего не отсекает
+        Arrays.fill(capacity, Integer.MAX_VALUE);
+    }
+
+    void update(int i, RoutePlan p) {
+        floor[i] = p.currentFloor;
+        load[i] = p.load;
+        capacity[i] = p.capacity;
+        stops[i] = p.stops.size();
+        dwellNow[i] = (p.status == ElevatorStatus.DOORS_OPEN) ? p.doorCloseTime : 0.0;
+        travel[i] = p.travelTime;
+    }
+
+    // секунды, дешевле которых лифт вызов не возьмет: дорога до этажа без остановок и штраф за полную кабину
+    // маршрут LOOK короче прямой дороги не бывает, остальные слагаемые цены неотрицательные;
+    // складываем в том же порядке, что EtaModel, поэтому у лифта без остановок оценка и есть цена
+    void lowerBounds(int reqFloor, double overCapacity) {
+        for (int i = 0; i < size; i++) {
+            double full = (load[i] >= capacity[i]) ? overCapacity : 0.0;
+            bound[i] = dwellNow[i] + Math.abs(reqFloor - floor[i]) * travel[i] + full;
+        }
+    }
+
+    // индекс минимальной оценки, при равенстве первый
+    int argminBound() {
+        int best = 0;
+        for (int i = 1; i < size; i++) {
+            if (bound[i] < bound[best]) best = i;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,75 @@
+package elevator_sim.dispatcher;
+
+import java.util.Arrays;
+
+// венгерский алгоритм с потенциалами для прямоугольной матрицы rows <= cols
+// возвращает для каждой строки номер столбца, сумма стоимостей минимальна, O(rows^2 * cols)
+final class HungarianSolver {
+
+    static int[] solve(double[][] cost) {
+        int n = cost.length;
+        if (n == 0) return new int[0];
+        int m = cost[0].length;
+        if (m < n) throw new IllegalArgumentException("столбцов меньше чем строк: " + m + " < " + n);
+
+        // индексация с 1, нулевой столбец фиктивный
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];   // p[j] - строка, занявшая столбец j
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                int j1 = 0;
+                double delta = Double.POSITIVE_INFINITY;
+
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) continue;
+                    double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+
+            // разворачиваем цепочку замен
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] rowToCol = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) rowToCol[p[j] - 1] = j - 1;
+        }
+        return rowToCol;
+    }
+
+    private HungarianSolver() {}
+}
@@ -0,0 +1,172 @@
+package elevator_sim.dispatcher;
+
+import elevator_sim.Config;
+import elevator_sim.models.Direction;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+import java.util.Arrays;
+
+// куда ставить свободные лифты: учим, с каких этажей и в какую сторону вызывают,
+// по скользящим окнам модельного времени, узнаем режим трафика и делим спрос между лифтами поровну
+// один экземпляр на диспетчер, трогает только его поток
+final class ParkingStrategy {
+
+    enum Pattern { UNKNOWN, UP_PEAK, DOWN_PEAK, LUNCH, INTERFLOOR }
+
+    static final int LOBBY = 1;
+    // пока вызовов меньше, спрос не угадать - лифты стоят там, где остановились
+    private static final double MIN_CALLS = 8.0;
+    // вес окна падает с возрастом, свежий трафик важнее
+    private static final double DECAY = 0.7;
+
+    private final long windowNanos = Config.PARKING_WINDOW_MS * 1_000_000L;
+    private final int windows = Config.PARKING_WINDOWS;
+    // счетчики вызовов [окно][направление][этаж]; номер окна, которому принадлежит ячейка кольца
+    private int[][][] counts;
+    private final long[] epochs;
+    private int floors;
+
+    // черновик последнего расчета: взвешенное число вызовов по этажам
+    private double[] up = new double[0];
+    private double[] down = new double[0];
+
+    ParkingStrategy() {
+        this(Config.FLOORS);
+    }
+
+    ParkingStrategy(int floors) {
+        this.floors = floors;
+        counts = new int[windows][2][floors + 1];
+        epochs = new long[windows];
+        Arrays.fill(epochs, -1L);
+    }
+
+    void observe(int floor, Direction dir, long nowNanos) {
+        if (floor > floors) grow(floor);
+
+        long epoch = nowNanos / windowNanos;
+        int slot = (int) (epoch % windows);
+        if (epochs[slot] != epoch) {
+            for (int[] row : counts[slot]) Arrays.fill(row, 0);
+            epochs[slot] = epoch;
+        }
+        counts[slot][dir == Direction.DOWN ? 1 : 0][floor]++;
+    }
+
+    private void grow(int floor) {
+        for (int w = 0; w < windows; w++) {
+            for (int d = 0; d < 2; d++) counts[w][d] = Arrays.copyOf(counts[w][d], floor + 1);
+        }
+        floors = floor;
+    }
+
+    void save(SnapshotWriter out) {
+        out.putInt(floors);
+        out.putInt(windows);
+        for (int w = 0; w < windows; w++) {
+            out.putLong(epochs[w]);
+            for (int d = 0; d < 2; d++) {
+                for (int f = 0; f <= floors; f++) out.putInt(counts[w][d][f]);
+            }
+        }
+    }
+
+    void restore(SnapshotReader in) {
+        int savedFloors = in.getInt();
+        int savedWindows = in.getInt();
+        if (savedWindows != windows) {
+            throw new IllegalStateException("Снимок с другим числом окон парковки: " + savedWindows);
+        }
+        floors = savedFloors;
+        counts = new int[windows][2][floors + 1];
+        for (int w = 0; w < windows; w++) {
+            epochs[w] = in.getLong();
+            for (int d = 0; d < 2; d++) {
+                for (int f = 0; f <= floors; f++) counts[w][d][f] = in.getInt();
+            }
+        }
+    }
+
+    // сворачиваем окна в up/down, возвращаем взвешенное число вызовов
+    private double collect(long nowNanos) {
+        if (up.length != floors + 1) {
+            up = new double[floors + 1];
+            down = new double[floors + 1];
+        } else {
+            Arrays.fill(up, 0.0);
+            Arrays.fill(down, 0.0);
+        }
+
+        long current = nowNanos / windowNanos;
+        double total = 0.0;
+        for (int slot = 0; slot < windows; slot++) {
+            long age = current - epochs[slot];
+            if (epochs[slot] < 0 || age < 0 || age >= windows) continue;
+
+            double w = Math.pow(DECAY, age);
+            int[] u = counts[slot][0];
+            int[] d = counts[slot][1];
+            for (int f = 1; f <= floors; f++) {
+                up[f] += w * u[f];
+                down[f] += w * d[f];
+                total += w * (u[f] + d[f]);
+            }
+        }
+        return total;
+    }
+
+    Pattern pattern(long nowNanos) {
+        double total = collect(nowNanos);
+        return (total < MIN_CALLS) ? Pattern.UNKNOWN : classify(total);
+    }
+
+    // утром почти все едут из холла вверх, вечером сверху вниз, в обед и то и другое сразу
+    private Pattern classify(double total) {
+        double fromLobby = up[LOBBY] / total;
+        double downward = 0.0;
+        for (int f = LOBBY + 1; f <= floors; f++) downward += down[f];
+        downward /= total;
+
+        if (fromLobby >= 0.5 && downward < 0.25) return Pattern.UP_PEAK;
+        // при ровном межэтажном трафике вниз и так едет почти половина, поэтому порог выше
+        if (downward >= 0.65 && fromLobby < 0.25) return Pattern.DOWN_PEAK;
+        if (fromLobby >= 0.25 && downward >= 0.3) return Pattern.LUNCH;
+        return Pattern.INTERFLOOR;
+    }
+
+    // этажи для cars лифтов по возрастанию, null - данных пока мало
+    // лифт i встает туда, где накопленный спрос переходит долю (i + 0.5) / cars,
+    // поэтому на этаж с половиной всех вызовов приходится половина лифтов
+    int[] parkingFloors(int cars, long nowNanos) {
+        double total = collect(nowNanos);
+        if (total < MIN_CALLS || cars == 0) return null;
+
+        Pattern pattern = classify(total);
+        double[] demand = new double[floors + 1];
+        double sum = 0.0;
+        for (int f = 1; f <= floors; f++) {
+            switch (pattern) {
+                case UP_PEAK:
+                    demand[f] = up[f];
+                    break;
+                case DOWN_PEAK:
+                    demand[f] = down[f];
+                    break;
+                default:
+                    demand[f] = up[f] + down[f];
+            }
+            sum += demand[f];
+        }
+
+        int[] result = new int[cars];
+        double acc = 0.0;
+        int f = 1;
+        for (int i = 0; i < cars; i++) {
+            double quantile = (i + 0.5) / cars * sum;
+            while (f < floors && acc + demand[f] < quantile) acc += demand[f++];
+            result[i] = f;
+        }
+        return result;
+    }
+}
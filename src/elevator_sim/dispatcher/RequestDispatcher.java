@@ -0,0 +1,73 @@
+package elevator_sim.dispatcher;
+
+import elevator_sim.Config;
+import elevator_sim.SimConfig;
+import elevator_sim.metrics.SimMetrics;
+import elevator_sim.models.Elevator;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+import java.util.List;
+
+// куда генератор и симуляция отправляют заявки: один диспетчер или набор шардов
+public interface RequestDispatcher {
+
+    void submitRequest(Object request);
+
+    // событийный режим: поток не запущен, очередь разбирает цикл симуляции
+    int drainPending();
+
+    boolean isBatching();
+
+    void setBatching(boolean batching);
+
+    // пересмотреть назначенные, но не подобранные вызовы; возвращает сколько переехало
+    int rebalance();
+
+    boolean isReassigning();
+
+    void setReassigning(boolean reassigning);
+
+    // объединять пассажиров одного этажа и направления в один вызов
+    boolean isCoalescing();
+
+    void setCoalescing(boolean coalescing);
+
+    // отправить свободные лифты туда, где по выученному трафику скоро будут вызовы; возвращает сколько поехало
+    int parkIdle();
+
+    boolean isParking();
+
+    void setParking(boolean parking);
+
+    DispatchStrategy getStrategy();
+
+    // куда писать KPI, по умолчанию SimMetrics.global()
+    void setMetrics(SimMetrics metrics);
+
+    void setStrategy(DispatchStrategy strategy);
+
+    void start();
+
+    // снимок для событийного режима: пишется и читается между событиями, когда поток диспетчера не запущен
+    void save(SnapshotWriter out);
+
+    void restore(SnapshotReader in);
+
+    // -Ddispatch.shards=N: при N > 1 парк делится на группы со своим диспетчером
+    static RequestDispatcher create(List<Elevator> elevators) {
+        return create(elevators, Config.FLOORS);
+    }
+
+    // в конфигурации несколько групп лифтов - у каждой свой шард, -Ddispatch.shards тогда не нужен
+    static RequestDispatcher create(List<Elevator> elevators, SimConfig config) {
+        if (config.banks.size() > 1) return ShardedDispatcher.byBanks(elevators, config);
+        return create(elevators, config.floors);
+    }
+
+    static RequestDispatcher create(List<Elevator> elevators, int floors) {
+        int shards = Integer.getInteger("dispatch.shards", 1);
+        if (shards <= 1 || elevators.size() < 2) return new Dispatcher(elevators);
+        return new ShardedDispatcher(elevators, Math.min(shards, elevators.size()), floors);
+    }
+}
@@ -0,0 +1,202 @@
+package elevator_sim.dispatcher;
+
+import elevator_sim.SimConfig;
+import elevator_sim.metrics.SimMetrics;
+import elevator_sim.models.CarRequest;
+import elevator_sim.models.Elevator;
+import elevator_sim.models.HallRequest;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// парк делится на группы лифтов, у каждой группы своя зона этажей, свой поток и своя очередь
+// вызов с этажа идет в шард его зоны, кнопка из кабины - в шард, которому принадлежит лифт
+// свободный шард забирает вызовы у соседа с длинной очередью, так нагрузка расходится по ядрам
+// группы - либо группы лифтов из SimConfig, либо равные куски парка по -Ddispatch.shards
+public final class ShardedDispatcher implements RequestDispatcher {
+
+    private final List<Dispatcher> shards = new ArrayList<>();
+    private final Map<Integer, Dispatcher> byElevator = new HashMap<>();
+    private final int floors;
+    // шард по этажу (индекс - этаж, 0 не используется)
+    private final Dispatcher[] zones;
+
+    public ShardedDispatcher(List<Elevator> elevators, int shardCount, int floors) {
+        this(slices(elevators, shardCount), floors);
+    }
+
+    // один шард на группу; зона этажей у шарда тем выше, чем больше у него лифтов
+    public ShardedDispatcher(List<List<Elevator>> groups, int floors) {
+        this.floors = floors;
+
+        int n = 0;
+        int[] firstCar = new int[groups.size() + 1];
+        for (int s = 0; s < groups.size(); s++) {
+            List<Elevator> group = List.copyOf(groups.get(s));
+            Dispatcher d = new Dispatcher("Диспетчер-" + (s + 1), group);
+            shards.add(d);
+            for (Elevator e : group) byElevator.put(e.id, d);
+            n += group.size();
+            firstCar[s + 1] = n;
+        }
+
+        // этаж f - в зоне шарда, которому принадлежит лифт с индексом (f - 1) * n / floors
+        zones = new Dispatcher[floors + 1];
+        int s = 0;
+        for (int f = 1; f <= floors; f++) {
+            long car = (long) (f - 1) * n / floors;
+            while (car >= firstCar[s + 1]) s++;
+            zones[f] = shards.get(s);
+        }
+
+        for (Dispatcher d : shards) {
+            List<Dispatcher> others = new ArrayList<>(shards);
+            others.remove(d);
+            d.setNeighbours(others);
+        }
+    }
+
+    // парк по группам лифтов: Elevator.fleet кладет группы подряд, в порядке SimConfig.banks
+    public static ShardedDispatcher byBanks(List<Elevator> elevators, SimConfig config) {
+        if (elevators.size() != config.elevators) {
+            throw new IllegalArgumentException("Лифтов " + elevators.size() + ", а в группах " + config.elevators);
+        }
+        List<List<Elevator>> groups = new ArrayList<>(config.banks.size());
+        int from = 0;
+        for (SimConfig.Bank b : config.banks) {
+            groups.add(elevators.subList(from, from + b.cars));
+            from += b.cars;
+        }
+        return new ShardedDispatcher(groups, config.floors);
+    }
+
+    private static List<List<Elevator>> slices(List<Elevator> elevators, int shardCount) {
+        int n = elevators.size();
+        List<List<Elevator>> groups = new ArrayList<>(shardCount);
+        for (int s = 0; s < shardCount; s++) groups.add(elevators.subList(s * n / shardCount, (s + 1) * n / shardCount));
+        return groups;
+    }
+
+    // зона этажа: дом режется на части по высоте, доля шарда - по его числу лифтов
+    private Dispatcher shardForFloor(int floor) {
+        return zones[Math.max(1, Math.min(floor, floors))];
+    }
+
+    @Override
+    public void submitRequest(Object request) {
+        if (request instanceof CarRequest) {
+            Dispatcher d = byElevator.get(((CarRequest) request).elevatorId);
+            if (d != null) {
+                d.submitRequest(request);
+                return;
+            }
+        }
+        if (request instanceof HallRequest) {
+            shardForFloor(((HallRequest) request).floor).submitRequest(request);
+            return;
+        }
+        shards.get(0).submitRequest(request);
+    }
+
+    @Override
+    public int drainPending() {
+        int n = 0;
+        for (Dispatcher d : shards) n += d.drainPending();
+        return n;
+    }
+
+    @Override
+    public boolean isBatching() {
+        return shards.get(0).isBatching();
+    }
+
+    @Override
+    public void setBatching(boolean batching) {
+        for (Dispatcher d : shards) d.setBatching(batching);
+    }
+
+    @Override
+    public boolean isCoalescing() {
+        return shards.get(0).isCoalescing();
+    }
+
+    @Override
+    public void setCoalescing(boolean coalescing) {
+        for (Dispatcher d : shards) d.setCoalescing(coalescing);
+    }
+
+    @Override
+    public int parkIdle() {
+        int n = 0;
+        for (Dispatcher d : shards) n += d.parkIdle();
+        return n;
+    }
+
+    @Override
+    public boolean isParking() {
+        return shards.get(0).isParking();
+    }
+
+    @Override
+    public void setParking(boolean parking) {
+        for (Dispatcher d : shards) d.setParking(parking);
+    }
+
+    @Override
+    public int rebalance() {
+        int n = 0;
+        for (Dispatcher d : shards) n += d.rebalance();
+        return n;
+    }
+
+    @Override
+    public boolean isReassigning() {
+        return shards.get(0).isReassigning();
+    }
+
+    @Override
+    public void setReassigning(boolean reassigning) {
+        for (Dispatcher d : shards) d.setReassigning(reassigning);
+    }
+
+    @Override
+    public DispatchStrategy getStrategy() {
+        return shards.get(0).getStrategy();
+    }
+
+    @Override
+    public void setStrategy(DispatchStrategy strategy) {
+        for (Dispatcher d : shards) d.setStrategy(strategy);
+    }
+
+    @Override
+    public void setMetrics(SimMetrics metrics) {
+        for (Dispatcher d : shards) d.setMetrics(metrics);
+    }
+
+    @Override
+    public void start() {
+        for (Dispatcher d : shards) d.start();
+    }
+
+    @Override
+    public void save(SnapshotWriter out) {
+        out.putInt(shards.size());
+        for (Dispatcher d : shards) d.saveShard(out);
+    }
+
+    @Override
+    public void restore(SnapshotReader in) {
+        int n = in.getInt();
+        if (n != shards.size()) throw new IllegalStateException("Снимок на " + n + " шардов, а их " + shards.size());
+        for (Dispatcher d : shards) d.restoreShard(in);
+    }
+
+    public List<Dispatcher> shards() {
+        return shards;
+    }
+}
@@ -0,0 +1,47 @@
+package elevator_sim.engine;
+
+import elevator_sim.utils.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// почтовый ящик поверх общего пула: сообщения одного актора выполняются строго по одному и по порядку,
+// но потока у актора нет - пока ящик пуст, он ничего не стоит
+public final class Actor implements Executor {
+    // за один заход не больше стольких сообщений, чтобы занятой актор не держал поток пула
+    private static final int BATCH = 64;
+
+    private final String name;
+    private final Executor pool;
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public Actor(String name, Executor pool) {
+        this.name = name;
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(Runnable message) {
+        mailbox.add(message);
+        if (scheduled.compareAndSet(false, true)) pool.execute(this::drain);
+    }
+
+    private void drain() {
+        Runnable message;
+        int n = 0;
+        while (n++ < BATCH && (message = mailbox.poll()) != null) {
+            try {
+                message.run();
+            } catch (RuntimeException e) {
+                Logger.errorLine("Ошибка актора", "msg", name, "err", String.valueOf(e));
+            }
+        }
+
+        scheduled.set(false);
+        // пока выходили, могли прислать еще - иначе сообщение пролежит до следующего execute
+        if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) pool.execute(this::drain);
+    }
+}
@@ -0,0 +1,92 @@
+package elevator_sim.engine;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+// планировщик дискретных событий с виртуальными часами
+// события с одинаковым временем выполняются в порядке добавления, поэтому прогон детерминирован
+public final class EventScheduler implements SimClock {
+
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long seq;
+        final Runnable action;
+
+        Event(long time, long seq, Runnable action) {
+            this.time = time;
+            this.seq = seq;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            int c = Long.compare(time, o.time);
+            return (c != 0) ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    // обход отложенных событий для снимка состояния
+    public interface PendingVisitor {
+        void visit(long timeNanos, Runnable action);
+    }
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private long now = 0;
+    private long seq = 0;
+    private long processed = 0;
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    public void schedule(double delaySec, Runnable action) {
+        scheduleAt(now + SimClock.toNanos(Math.max(0.0, delaySec)), action);
+    }
+
+    public void scheduleAt(long timeNanos, Runnable action) {
+        queue.add(new Event(Math.max(timeNanos, now), seq++, action));
+    }
+
+    // выполняет одно ближайшее событие, false если очередь пуста
+    public boolean runNext() {
+        Event e = queue.poll();
+        if (e == null) return false;
+
+        now = e.time;
+        processed++;
+        e.action.run();
+        return true;
+    }
+
+    // отложенные события в порядке, в котором они выполнятся
+    public void forEachPending(PendingVisitor visitor) {
+        Event[] events = queue.toArray(new Event[0]);
+        Arrays.sort(events);
+        for (Event e : events) visitor.visit(e.time, e.action);
+    }
+
+    // часы восстановленного прогона; события после этого ставятся заново через scheduleAt
+    public void restore(long nowNanos, long processedEvents) {
+        if (!queue.isEmpty()) throw new IllegalStateException("Часы переставляются только у пустого планировщика");
+        now = nowNanos;
+        processed = processedEvents;
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public long peekTime() {
+        Event e = queue.peek();
+        return (e == null) ? Long.MAX_VALUE : e.time;
+    }
+
+    public long processedEvents() {
+        return processed;
+    }
+}
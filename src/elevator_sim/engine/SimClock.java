@@ -0,0 +1,14 @@
+package elevator_sim.engine;
+
+// источник времени симуляции в наносекундах
+// в реальном режиме это System.nanoTime, в событийном - виртуальные часы планировщика
+@FunctionalInterface
+public interface SimClock {
+    SimClock REAL = System::nanoTime;
+
+    long nanoTime();
+
+    static long toNanos(double sec) {
+        return (long) (sec * 1_000_000_000L);
+    }
+}
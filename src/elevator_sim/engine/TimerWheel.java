@@ -0,0 +1,100 @@
+package elevator_sim.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+// колесо таймеров реального времени: один поток-тикер, задачи раскладываются по корзинам тиков
+// постановка O(1) и без блокировок, сработавшая задача уходит в переданный исполнитель
+// точность - один тик, для шагов лифта в секундах этого с запасом
+public final class TimerWheel implements AutoCloseable {
+
+    private static final class Timeout {
+        final long deadline;
+        final Runnable task;
+        long rounds;
+
+        Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<ArrayDeque<Timeout>> buckets;
+    // новые таймеры приходят из любых потоков, в корзины их переносит только тикер
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Thread ticker;
+    private final long start;
+    private long tick;
+    private volatile boolean running = true;
+
+    // buckets - степень двойки
+    public TimerWheel(long tickMs, int buckets, Executor executor) {
+        if (Integer.bitCount(buckets) != 1) throw new IllegalArgumentException("buckets: " + buckets);
+
+        this.tickNanos = tickMs * 1_000_000L;
+        this.mask = buckets - 1;
+        List<ArrayDeque<Timeout>> wheel = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) wheel.add(new ArrayDeque<>());
+        this.buckets = List.copyOf(wheel);
+        this.executor = executor;
+        this.start = System.nanoTime();
+
+        ticker = new Thread(this::run, "Таймеры");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    public void schedule(double delaySec, Runnable task) {
+        incoming.add(new Timeout(System.nanoTime() + SimClock.toNanos(Math.max(0.0, delaySec)), task));
+    }
+
+    private void run() {
+        while (running) {
+            long tickEnd = start + (tick + 1) * tickNanos;
+            long left;
+            while ((left = tickEnd - System.nanoTime()) > 0) LockSupport.parkNanos(left);
+
+            transferIncoming();
+            expire(buckets.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    // таймер срабатывает в конце тика, на который приходится его срок, но не раньше текущего
+    private void transferIncoming() {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            long due = Math.max(tick, (t.deadline - start) / tickNanos);
+            t.rounds = (due - tick) / buckets.size();
+            buckets.get((int) (due & mask)).add(t);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout t = it.next();
+            if (t.rounds > 0) {
+                t.rounds--;
+                continue;
+            }
+            it.remove();
+            executor.execute(t.task);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+}
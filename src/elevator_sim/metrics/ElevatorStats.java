@@ -0,0 +1,110 @@
+package elevator_sim.metrics;
+
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+// счетчики одного лифта; пишет только сам лифт (его step()), остальные лишь читают
+// поэтому хватает volatile без атомиков
+public final class ElevatorStats {
+    public final int elevatorId;
+
+    private volatile long busyNanos;
+    private volatile long stops;
+    private volatile long trips;
+    // остановок во всех законченных поездках
+    private volatile long tripStopSum;
+    private volatile long departures;
+    private volatile double loadSum;
+
+    // поездка - ход в одну сторону: начинается с отправления, кончается разворотом или простоем
+    // направление текущей поездки (1 вверх, -1 вниз), 0 - лифт стоит без поездки
+    private int tripDirection;
+    // остановки текущей поездки; двери, открытые на месте до отправления, идут в поездку, которая с них начнется
+    private int tripStops;
+    public final Histogram stopsPerTrip = new Histogram();
+
+    ElevatorStats(int elevatorId) {
+        this.elevatorId = elevatorId;
+    }
+
+    public void busy(long nanos) {
+        busyNanos += nanos;
+    }
+
+    // лифт проехал этаж в сторону direction (1 или -1); смена стороны - конец поездки и начало новой
+    public void moved(int direction) {
+        if (tripDirection != 0 && tripDirection != direction) endTrip();
+        tripDirection = direction;
+    }
+
+    public void stop() {
+        stops++;
+        tripStops++;
+    }
+
+    public void departed(int load, int capacity) {
+        departures++;
+        loadSum += (double) load / capacity;
+    }
+
+    public void idle() {
+        if (tripDirection != 0) endTrip();
+    }
+
+    private void endTrip() {
+        tripDirection = 0;
+        trips++;
+        tripStopSum += tripStops;
+        stopsPerTrip.record(tripStops);
+        tripStops = 0;
+    }
+
+    void save(SnapshotWriter out) {
+        out.putLong(busyNanos);
+        out.putLong(stops);
+        out.putLong(trips);
+        out.putLong(tripStopSum);
+        out.putLong(departures);
+        out.putDouble(loadSum);
+        out.putInt(tripDirection);
+        out.putInt(tripStops);
+        stopsPerTrip.save(out);
+    }
+
+    void restore(SnapshotReader in) {
+        busyNanos = in.getLong();
+        stops = in.getLong();
+        trips = in.getLong();
+        tripStopSum = in.getLong();
+        departures = in.getLong();
+        loadSum = in.getDouble();
+        tripDirection = in.getInt();
+        tripStops = in.getInt();
+        stopsPerTrip.restore(in);
+    }
+
+    public long stops() {
+        return stops;
+    }
+
+    public long trips() {
+        return trips;
+    }
+
+    // доля времени в движении или с работающими дверьми
+    public double utilisation(long elapsedNanos) {
+        return (elapsedNanos <= 0) ? 0.0 : Math.min(1.0, (double) busyNanos / elapsedNanos);
+    }
+
+    // только по законченным поездкам: остановки текущей еще не все
+    public double meanStopsPerTrip() {
+        long t = trips;
+        return (t == 0) ? 0.0 : (double) tripStopSum / t;
+    }
+
+    // средняя загрузка кабины на отправлении относительно вместимости
+    public double loadFactor() {
+        long d = departures;
+        return (d == 0) ? 0.0 : loadSum / d;
+    }
+}
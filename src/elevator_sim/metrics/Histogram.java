@@ -0,0 +1,117 @@
+package elevator_sim.metrics;
+
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// лог-линейная гистограмма в духе HdrHistogram: до 128 значений ведра точные,
+// дальше на каждую степень двойки 64 ведра, ошибка не больше 1/64 (~1.6%)
+// запись без блокировок, память фиксированная и не зависит от числа значений
+public final class Histogram {
+    private static final int SUB_BITS = 6;
+    private static final int HALF = 1 << SUB_BITS;   // 64
+    private static final int LINEAR = HALF << 1;     // 128
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        total.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    // слить другую гистограмму в эту, например прогоны Монте-Карло в общее распределение
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    // в снимок идут только непустые ведра: номер и счетчик; выше ведра максимума пусто, туда не смотрим
+    public void save(SnapshotWriter out) {
+        int last = bucket(max.get());
+        int used = 0;
+        for (int i = 0; i <= last; i++) {
+            if (counts.get(i) != 0) used++;
+        }
+        out.putInt(used);
+        for (int i = 0; i <= last; i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            out.putInt(i);
+            out.putLong(c);
+        }
+        out.putLong(total.sum());
+        out.putLong(sum.sum());
+        out.putLong(max.get());
+    }
+
+    public void restore(SnapshotReader in) {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        int used = in.getInt();
+        for (int k = 0; k < used; k++) {
+            int i = in.getInt();
+            counts.set(i, in.getLong());
+        }
+        total.reset();
+        total.add(in.getLong());
+        sum.reset();
+        sum.add(in.getLong());
+        max.set(in.getLong());
+    }
+
+    static int bucket(long v) {
+        if (v < LINEAR) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        int mantissa = (int) (v >>> shift);           // [64, 128)
+        return LINEAR + (shift - 1) * HALF + (mantissa - HALF);
+    }
+
+    // верхняя граница ведра - как и Hdr отдаем "не больше чем"
+    static long upperBound(int idx) {
+        if (idx < LINEAR) return idx;
+        int shift = (idx - LINEAR) / HALF + 1;
+        long mantissa = (idx - LINEAR) % HALF + HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = total.sum();
+        return (n == 0) ? 0.0 : (double) sum.sum() / n;
+    }
+
+    // p в процентах: 50, 95, 99
+    public long percentile(double p) {
+        long n = total.sum();
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+}
@@ -0,0 +1,261 @@
+package elevator_sim.metrics;
+
+import elevator_sim.engine.SimClock;
+import elevator_sim.models.HallRequest;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+import elevator_sim.utils.Logger;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// KPI одного прогона: ожидание, поездка, решение диспетчера, очередь, лифты
+// в потоковом режиме общий экземпляр global(), у событийной симуляции свой на ее часах
+public final class SimMetrics implements SimMetricsMXBean {
+    private static final SimMetrics GLOBAL = new SimMetrics(SimClock.REAL);
+
+    private final SimClock clock;
+    private final long startedAt;
+
+    // вызов с этажа -> посадка
+    public final Histogram hallWait = new Histogram();
+    // посадка -> выход на своем этаже
+    public final Histogram ride = new Histogram();
+    // сколько диспетчер думал над вызовом (или пакетом), реальное время
+    public final Histogram decision = new Histogram();
+    // длина очереди диспетчера в момент поступления заявки
+    public final Histogram queueDepth = new Histogram();
+    private volatile int lastQueueDepth;
+    // сколько раз вызов с этажа отдали другому лифту
+    private final LongAdder reassigned = new LongAdder();
+    // сколько пассажиров присоединились к уже открытому вызову и не дошли до диспетчера
+    private final LongAdder coalesced = new LongAdder();
+
+    private final Map<Integer, ElevatorStats> elevators = new ConcurrentSkipListMap<>();
+
+    public SimMetrics(SimClock clock) {
+        this.clock = clock;
+        this.startedAt = clock.nanoTime();
+    }
+
+    public static SimMetrics global() {
+        return GLOBAL;
+    }
+
+    public long now() {
+        return clock.nanoTime();
+    }
+
+    public ElevatorStats elevator(int id) {
+        return elevators.computeIfAbsent(id, ElevatorStats::new);
+    }
+
+    public void submitted(HallRequest req) {
+        req.submittedAt = now();
+    }
+
+    public void boarded(HallRequest req) {
+        long t = now();
+        req.pickedUpAt = t;
+        if (req.submittedAt >= 0) hallWait.record(t - req.submittedAt);
+    }
+
+    public void delivered(HallRequest req) {
+        if (req.pickedUpAt >= 0) ride.record(now() - req.pickedUpAt);
+    }
+
+    public void decision(long nanos) {
+        decision.record(nanos);
+    }
+
+    public void reassigned() {
+        reassigned.increment();
+    }
+
+    public void coalesced() {
+        coalesced.increment();
+    }
+
+    public void queueDepth(int depth) {
+        lastQueueDepth = depth;
+        queueDepth.record(depth);
+    }
+
+    // снимок: все распределения и счетчики, чтобы сводка продолженного прогона считалась от его начала
+    public void save(SnapshotWriter out) {
+        hallWait.save(out);
+        ride.save(out);
+        decision.save(out);
+        queueDepth.save(out);
+        out.putInt(lastQueueDepth);
+        out.putLong(reassigned.sum());
+        out.putLong(coalesced.sum());
+
+        out.putInt(elevators.size());
+        for (ElevatorStats s : elevators.values()) {
+            out.putInt(s.elevatorId);
+            s.save(out);
+        }
+    }
+
+    public void restore(SnapshotReader in) {
+        hallWait.restore(in);
+        ride.restore(in);
+        decision.restore(in);
+        queueDepth.restore(in);
+        lastQueueDepth = in.getInt();
+        reassigned.reset();
+        reassigned.add(in.getLong());
+        coalesced.reset();
+        coalesced.add(in.getLong());
+
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) elevator(in.getInt()).restore(in);
+    }
+
+    // регистрация в платформенном MBeanServer: elevator_sim:type=Metrics,name=<name>
+    public void register(String name) {
+        try {
+            ObjectName on = new ObjectName("elevator_sim:type=Metrics,name=" + ObjectName.quote(name));
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(on)) server.unregisterMBean(on);
+            server.registerMBean(this, on);
+        } catch (Exception e) {
+            Logger.warnLine("JMX недоступен", "err", String.valueOf(e));
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3;
+    }
+
+    @Override
+    public long getHallCalls() {
+        return hallWait.count();
+    }
+
+    @Override
+    public double getHallWaitP50Seconds() {
+        return seconds(hallWait.percentile(50));
+    }
+
+    @Override
+    public double getHallWaitP95Seconds() {
+        return seconds(hallWait.percentile(95));
+    }
+
+    @Override
+    public double getHallWaitP99Seconds() {
+        return seconds(hallWait.percentile(99));
+    }
+
+    @Override
+    public double getHallWaitMaxSeconds() {
+        return seconds(hallWait.max());
+    }
+
+    @Override
+    public long getRides() {
+        return ride.count();
+    }
+
+    @Override
+    public double getRideP50Seconds() {
+        return seconds(ride.percentile(50));
+    }
+
+    @Override
+    public double getRideP95Seconds() {
+        return seconds(ride.percentile(95));
+    }
+
+    @Override
+    public double getRideP99Seconds() {
+        return seconds(ride.percentile(99));
+    }
+
+    @Override
+    public double getDecisionP50Micros() {
+        return micros(decision.percentile(50));
+    }
+
+    @Override
+    public double getDecisionP95Micros() {
+        return micros(decision.percentile(95));
+    }
+
+    @Override
+    public double getDecisionP99Micros() {
+        return micros(decision.percentile(99));
+    }
+
+    @Override
+    public long getReassignments() {
+        return reassigned.sum();
+    }
+
+    @Override
+    public long getCoalescedCalls() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return lastQueueDepth;
+    }
+
+    @Override
+    public long getQueueDepthP99() {
+        return queueDepth.percentile(99);
+    }
+
+    @Override
+    public long getQueueDepthMax() {
+        return queueDepth.max();
+    }
+
+    @Override
+    public double[] getElevatorUtilisation() {
+        long elapsed = now() - startedAt;
+        return elevators.values().stream().mapToDouble(s -> s.utilisation(elapsed)).toArray();
+    }
+
+    @Override
+    public double[] getElevatorStopsPerTrip() {
+        return elevators.values().stream().mapToDouble(ElevatorStats::meanStopsPerTrip).toArray();
+    }
+
+    @Override
+    public double[] getElevatorLoadFactor() {
+        return elevators.values().stream().mapToDouble(ElevatorStats::loadFactor).toArray();
+    }
+
+    @Override
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Ожидание, с    | n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f%n", hallWait.count(),
+                getHallWaitP50Seconds(), getHallWaitP95Seconds(), getHallWaitP99Seconds(), getHallWaitMaxSeconds()));
+        sb.append(String.format("Поездка, с     | n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f%n", ride.count(),
+                getRideP50Seconds(), getRideP95Seconds(), getRideP99Seconds(), seconds(ride.max())));
+        sb.append(String.format("Решение, мкс   | n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f%n", decision.count(),
+                getDecisionP50Micros(), getDecisionP95Micros(), getDecisionP99Micros(), micros(decision.max())));
+        sb.append(String.format("Очередь        | p50=%d p99=%d max=%d переназначено=%d объединено=%d%n",
+                queueDepth.percentile(50), getQueueDepthP99(), getQueueDepthMax(), getReassignments(),
+                getCoalescedCalls()));
+
+        long elapsed = now() - startedAt;
+        for (ElevatorStats s : elevators.values()) {
+            sb.append(String.format("Лифт %-9d | загрузка времени=%.0f%% остановок/поездку=%.2f заполнение=%.0f%% поездок=%d%n",
+                    s.elevatorId, s.utilisation(elapsed) * 100, s.meanStopsPerTrip(),
+                    s.loadFactor() * 100, s.trips()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package elevator_sim.metrics;
+
+// то, что видно в JConsole/VisualVM; время ожидания и поездки в секундах модели,
+// задержка решения диспетчера - в микросекундах реального времени
+public interface SimMetricsMXBean {
+    long getHallCalls();
+
+    double getHallWaitP50Seconds();
+
+    double getHallWaitP95Seconds();
+
+    double getHallWaitP99Seconds();
+
+    double getHallWaitMaxSeconds();
+
+    long getRides();
+
+    double getRideP50Seconds();
+
+    double getRideP95Seconds();
+
+    double getRideP99Seconds();
+
+    double getDecisionP50Micros();
+
+    double getDecisionP95Micros();
+
+    double getDecisionP99Micros();
+
+    long getReassignments();
+
+    long getCoalescedCalls();
+
+    int getQueueDepth();
+
+    long getQueueDepthP99();
+
+    long getQueueDepthMax();
+
+    double[] getElevatorUtilisation();
+
+    double[] getElevatorStopsPerTrip();
+
+    double[] getElevatorLoadFactor();
+
+    String summary();
+}
@@ -0,0 +1,363 @@
+package elevator_sim.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import elevator_sim.models.Elevator;
+import elevator_sim.models.ElevatorEvent;
+import elevator_sim.models.ElevatorState;
+import elevator_sim.utils.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// живая телеметрия на встроенном HTTP-сервере JDK, только на localhost
+// GET /events - поток Server-Sent Events: первым полный кадр, дальше только лифты и KPI, изменившиеся с прошлого кадра
+// GET /state - полный кадр одним JSON, GET / - страничка, которая рисует парк по /events
+// кадры снимает свой поток с частотой hz оптимистичным чтением (Elevator.readState): лифты блокировок не ждут,
+// медленный клиент задерживает только этот поток, а не симуляцию
+// остановки и посадки считаются подпиской на поток событий каждого лифта (Elevator.subscribe)
+public final class TelemetryServer implements AutoCloseable {
+    // лифт в кадре - столько чисел подряд: номер, этаж, направление (-1/0/1), статус, загрузка, вызовы, цели
+    private static final String[] CAR_FIELDS = {"id", "floor", "dir", "status", "load", "calls", "stops"};
+    private static final int W = CAR_FIELDS.length;
+    private static final String[] KPI_FIELDS = {
+            "hallCalls", "waitP50Ms", "waitP95Ms", "rides", "rideP50Ms", "reassigned", "coalesced", "queueDepth",
+            "doorOpenings", "boardings"};
+    // без изменений клиенту раз в столько кадров уходит комментарий, так отвалившиеся находятся
+    private static final int HEARTBEAT_FRAMES = 50;
+
+    private static final class Client {
+        final HttpExchange exchange;
+        final OutputStream out;
+        // еще не получил полный кадр
+        boolean fresh = true;
+
+        Client(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+    }
+
+    private final HttpServer http;
+    private final List<Elevator> elevators;
+    private final SimMetrics metrics;
+    private final long periodNanos;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    // счетчики из потоков событий лифтов
+    private final LongAdder doorOpenings = new LongAdder();
+    private final LongAdder boardings = new LongAdder();
+    private final List<Flow.Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Thread sampler;
+    private volatile boolean running = true;
+
+    // кадры трогает только поток sampler: прошлый отправленный и текущий
+    private final ElevatorState scratch = new ElevatorState();
+    private int[] last;
+    private int[] current;
+    private final long[] lastKpi = new long[KPI_FIELDS.length];
+    private final long[] kpi = new long[KPI_FIELDS.length];
+    private long seq;
+    private final StringBuilder sb = new StringBuilder(4096);
+
+    public TelemetryServer(int port, List<Elevator> elevators, SimMetrics metrics, double hz) {
+        this.elevators = List.copyOf(elevators);
+        this.metrics = metrics;
+        this.periodNanos = (long) (1e9 / Math.max(0.1, hz));
+        last = new int[elevators.size() * W];
+        current = new int[elevators.size() * W];
+        Arrays.fill(last, Integer.MIN_VALUE);
+        Arrays.fill(lastKpi, Long.MIN_VALUE);
+
+        try {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Телеметрия-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        http.createContext("/events", this::events);
+        http.createContext("/state", this::state);
+        http.createContext("/", this::page);
+
+        sampler = new Thread(this::run, "Телеметрия");
+        sampler.setDaemon(true);
+
+        for (Elevator e : this.elevators) e.subscribe(new EventCounter());
+    }
+
+    // подписчик на один лифт: счет дешевый, поэтому спрос сразу без ограничений
+    private final class EventCounter implements Flow.Subscriber<ElevatorEvent> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriptions.add(subscription);
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ElevatorEvent event) {
+            switch (event.type) {
+                case DOORS_OPENED -> doorOpenings.increment();
+                case BOARDED -> boardings.increment();
+                default -> { }
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            Logger.errorLine("Ошибка", "msg", "Телеметрия: " + error);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    // -Dtelemetry.port=N включает сервер, -Dtelemetry.hz - сколько кадров в секунду (по умолчанию 5)
+    public static TelemetryServer fromProperty(List<Elevator> elevators, SimMetrics metrics) {
+        Integer port = Integer.getInteger("telemetry.port");
+        if (port == null) return null;
+
+        TelemetryServer server = new TelemetryServer(port, elevators, metrics,
+                Double.parseDouble(System.getProperty("telemetry.hz", "5")));
+        server.start();
+        return server;
+    }
+
+    public void start() {
+        http.start();
+        sampler.start();
+        Logger.logLine("Телеметрия", "msg", "http://localhost:" + http.getAddress().getPort() + "/");
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    // поток событий держим открытым: обработчик только регистрирует клиента, пишет в него sampler
+    private void events(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        clients.add(new Client(ex));
+    }
+
+    private void state(HttpExchange ex) throws IOException {
+        int[] frame = new int[elevators.size() * W];
+        long[] counters = new long[KPI_FIELDS.length];
+        sample(frame, counters, new ElevatorState());
+        StringBuilder json = new StringBuilder(frame.length * 4 + 256);
+        full(json, frame, counters, -1);
+        send(ex, "application/json; charset=utf-8", json.toString());
+    }
+
+    private void page(HttpExchange ex) throws IOException {
+        send(ex, "text/html; charset=utf-8", PAGE);
+    }
+
+    private static void send(HttpExchange ex, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // состояние без блокировок лифтов: readState повторяет чтение, если лифт как раз писал
+    private void sample(int[] frame, long[] counters, ElevatorState st) {
+        for (int i = 0; i < elevators.size(); i++) {
+            Elevator e = elevators.get(i);
+            e.readState(st);
+            int o = i * W;
+            frame[o] = e.id;
+            frame[o + 1] = st.currentFloor;
+            frame[o + 2] = st.direction.step();
+            frame[o + 3] = st.status.ordinal();
+            frame[o + 4] = st.load;
+            frame[o + 5] = st.hallCalls;
+            frame[o + 6] = st.targets.size();
+        }
+
+        counters[0] = metrics.hallWait.count();
+        counters[1] = metrics.hallWait.percentile(50) / 1_000_000;
+        counters[2] = metrics.hallWait.percentile(95) / 1_000_000;
+        counters[3] = metrics.ride.count();
+        counters[4] = metrics.ride.percentile(50) / 1_000_000;
+        counters[5] = metrics.getReassignments();
+        counters[6] = metrics.getCoalescedCalls();
+        counters[7] = metrics.getQueueDepth();
+        counters[8] = doorOpenings.sum();
+        counters[9] = boardings.sum();
+    }
+
+    private void run() {
+        int quiet = 0;
+        while (running) {
+            long t0 = System.nanoTime();
+            sample(current, kpi, scratch);
+            seq++;
+
+            String full = null;
+            String delta = null;
+            boolean changed = delta(sb);
+            if (changed) delta = event("delta", sb);
+
+            for (Client c : clients) {
+                String payload;
+                if (c.fresh) {
+                    if (full == null) {
+                        sb.setLength(0);
+                        full(sb, current, kpi, seq);
+                        full = event("full", sb);
+                    }
+                    payload = full;
+                } else if (changed) {
+                    payload = delta;
+                } else if (quiet >= HEARTBEAT_FRAMES) {
+                    payload = ": \n\n";
+                } else {
+                    continue;
+                }
+                write(c, payload);
+            }
+            quiet = (changed || quiet >= HEARTBEAT_FRAMES) ? 0 : quiet + 1;
+
+            int[] t = last;
+            last = current;
+            current = t;
+            System.arraycopy(kpi, 0, lastKpi, 0, kpi.length);
+
+            long left = periodNanos - (System.nanoTime() - t0);
+            if (left > 0) LockSupport.parkNanos(left);
+        }
+    }
+
+    private void write(Client c, String payload) {
+        try {
+            c.out.write(payload.getBytes(StandardCharsets.UTF_8));
+            c.out.flush();
+            c.fresh = false;
+        } catch (IOException e) {
+            // клиент ушел
+            clients.remove(c);
+            c.exchange.close();
+        }
+    }
+
+    private static String event(String name, StringBuilder data) {
+        return "event: " + name + "\ndata: " + data + "\n\n";
+    }
+
+    // только лифты и счетчики, которые поменялись; false - менять нечего
+    private boolean delta(StringBuilder out) {
+        out.setLength(0);
+        out.append("{\"seq\":").append(seq).append(",\"t\":").append(metrics.now() / 1_000_000);
+        out.append(",\"cars\":[");
+        boolean any = false;
+        boolean first = true;
+        for (int o = 0; o < current.length; o += W) {
+            if (Arrays.equals(current, o, o + W, last, o, o + W)) continue;
+            if (!first) out.append(',');
+            car(out, current, o);
+            first = false;
+            any = true;
+        }
+        out.append("],\"kpi\":{");
+        first = true;
+        for (int k = 0; k < kpi.length; k++) {
+            if (kpi[k] == lastKpi[k]) continue;
+            if (!first) out.append(',');
+            out.append('"').append(KPI_FIELDS[k]).append("\":").append(kpi[k]);
+            first = false;
+            any = true;
+        }
+        out.append("}}");
+        return any;
+    }
+
+    private void full(StringBuilder out, int[] frame, long[] counters, long frameSeq) {
+        out.append("{\"seq\":").append(frameSeq).append(",\"t\":").append(metrics.now() / 1_000_000);
+        out.append(",\"fields\":[");
+        for (int f = 0; f < W; f++) {
+            if (f > 0) out.append(',');
+            out.append('"').append(CAR_FIELDS[f]).append('"');
+        }
+        out.append("],\"cars\":[");
+        for (int o = 0; o < frame.length; o += W) {
+            if (o > 0) out.append(',');
+            car(out, frame, o);
+        }
+        out.append("],\"kpi\":{");
+        for (int k = 0; k < counters.length; k++) {
+            if (k > 0) out.append(',');
+            out.append('"').append(KPI_FIELDS[k]).append("\":").append(counters[k]);
+        }
+        out.append("}}");
+    }
+
+    private static void car(StringBuilder out, int[] frame, int o) {
+        out.append('[');
+        for (int f = 0; f < W; f++) {
+            if (f > 0) out.append(',');
+            out.append(frame[o + f]);
+        }
+        out.append(']');
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        for (Flow.Subscription s : subscriptions) s.cancel();
+        subscriptions.clear();
+        for (Client c : clients) c.exchange.close();
+        clients.clear();
+        http.stop(0);
+    }
+
+    // страничка без зависимостей: таблица лифтов, дельты накладываются на последний полный кадр
+    private static final String PAGE = """
+            <!doctype html><meta charset="utf-8"><title>Лифты</title>
+            <style>body{font:13px monospace}td{padding:0 8px;text-align:right}.m{background:#def}.d{background:#fed}</style>
+            <div id="kpi"></div><table><thead><tr><th>лифт<th>этаж<th>ход<th>статус<th>внутри<th>вызовы<th>цели</thead>
+            <tbody id="cars"></tbody></table>
+            <script>
+            const cars = new Map(), kpi = {}, dir = {"-1": "↓", "0": "", "1": "↑"}, st = ["стоит", "едет", "двери"];
+            function draw() {
+              document.getElementById("kpi").textContent = Object.entries(kpi).map(([k, v]) => k + "=" + v).join("  ");
+              document.getElementById("cars").innerHTML = [...cars.values()].map(c =>
+                `<tr class="${c[3] == 1 ? "m" : c[3] == 2 ? "d" : ""}"><td>${c[0]}<td>${c[1]}<td>${dir[c[2]]}` +
+                `<td>${st[c[3]]}<td>${c[4]}<td>${c[5]}<td>${c[6]}`).join("");
+            }
+            function apply(e) {
+              const f = JSON.parse(e.data);
+              for (const c of f.cars) cars.set(c[0], c);
+              Object.assign(kpi, f.kpi);
+              draw();
+            }
+            const es = new EventSource("/events");
+            es.addEventListener("full", e => { cars.clear(); apply(e); });
+            es.addEventListener("delta", apply);
+            </script>
+            """;
+}
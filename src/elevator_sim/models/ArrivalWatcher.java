@@ -0,0 +1,71 @@
+package elevator_sim.models;
+
+import elevator_sim.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+// один подписчик потока событий лифта на всех его пассажиров: по этажу список ждущих,
+// на DOORS_OPENED этажа список снимается и каждому опускается его защелка arrived
+// поток без потерь, поэтому отставший подписчик открытие дверей не пропустит, а получит позже
+// ожидание регистрируется до того, как лифт узнает цель, поэтому открытие дверей не раньше ожидания
+// на поток подписывается при первом ожидании: в событийном режиме пассажиров-потоков нет, и лифт событий не заводит
+final class ArrivalWatcher implements Flow.Subscriber<ElevatorEvent> {
+    // спрос запрашиваем порциями, как пройдет порция - просим следующую
+    private static final int BATCH = 64;
+
+    private final ElevatorEventStream stream;
+    private final Map<Integer, List<RideSignals>> waiting = new HashMap<>();
+    private boolean subscribed;
+    private Flow.Subscription subscription;
+    // сколько событий еще осталось от запрошенной порции; трогает только доставка
+    private int left;
+
+    ArrivalWatcher(ElevatorEventStream stream) {
+        this.stream = stream;
+    }
+
+    // подписка под той же блокировкой: пока она не оформлена, пассажир не вернется и кнопку не нажмет
+    synchronized void expect(int floor, RideSignals signals) {
+        waiting.computeIfAbsent(floor, k -> new ArrayList<>()).add(signals);
+        if (subscribed) return;
+        subscribed = true;
+        stream.subscribe(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        left = BATCH;
+        subscription.request(BATCH);
+    }
+
+    @Override
+    public void onNext(ElevatorEvent event) {
+        if (event.type == ElevatorEvent.Type.DOORS_OPENED) {
+            List<RideSignals> ready;
+            synchronized (this) {
+                ready = waiting.remove(event.floor);
+            }
+            if (ready != null) {
+                for (RideSignals s : ready) s.arrived.countDown();
+            }
+        }
+        if (--left == 0) {
+            left = BATCH;
+            subscription.request(BATCH);
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        Logger.errorLine("Ошибка", "msg", "Поток событий лифта: " + error);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+}
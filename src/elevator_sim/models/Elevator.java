@@ -1,51 +1,181 @@
 package elevator_sim.models;
-import elevator_sim.Config;
+import elevator_sim.SimConfig;
+import elevator_sim.engine.SimClock;
+import elevator_sim.metrics.ElevatorStats;
+import elevator_sim.metrics.SimMetrics;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
 import elevator_sim.utils.Logger;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.concurrent.Flow;
 public final class Elevator extends Thread {
 
     public final int id;
     public final int capacity;
-
-    private final ReentrantLock lock = new ReentrantLock(true);
-    private ElevatorState state;
-    //кто сейчас внутри лифта
-    private final Set<String> passengers = new HashSet<>();
-    // сигнал прибытия на этаж
-    // пассажиры ждут через waitForArrival()
-    private final Map<Integer, CompletableFuture<Void>> arrivalFutures = new ConcurrentHashMap<>();
+    private final double floorTravelTime;
+    private final double doorOpenTime;
+    private final double doorCloseTime;
+
+    // запись под writeLock, читатели (диспетчер) идут оптимистично и лифт не тормозят
+    private final StampedLock lock = new StampedLock();
+    // состояние в примитивах, меняется на месте без новых объектов
+    private int currentFloor;
+    private Direction direction = Direction.IDLE;
+    private ElevatorStatus status = ElevatorStatus.IDLE;
+    private final FloorSet targets = new FloorSet();
+    //кто сейчас внутри лифта: номера пассажиров в первых load ячейках
+    private int[] riders;
+    // load читается без блокировки
+    private int load;
+    // поток событий лифта: прибытие, двери, посадка, проезд этажа
+    // лифт не ждет подписчиков и ничего не теряет: каждому событие уходит по его спросу (request(n))
+    private final ElevatorEventStream events = new ElevatorEventStream();
+    // подписчик потока, через которого все пассажиры лифта ждут своего этажа
+    private final ArrivalWatcher arrivals = new ArrivalWatcher(events);
     // этаж список внешних заявок люди ждут лифт на этаже
     private final Map<Integer, List<HallRequest>> hallRequestsByFloor = new HashMap<>();
+    // те же вызовы битами по направлению, решение на этаже идет только по маскам
+    private final FloorSet hallUp = new FloorSet();
+    private final FloorSet hallDown = new FloorSet();
+    // сколько человек ждет этот лифт на этажах (за одним вызовом может стоять несколько)
+    // ведется на ходу: вызов приносит и уносит свои ridersCounted, без обхода всех вызовов
+    private int hallCount;
+    // цели ждущих пассажиров, если они сказали их на этаже
+    private final FloorSet hallTargets = new FloorSet();
+    // остановки и цели одной маской, ведутся при каждом изменении масок выше
+    private final Route route;
     private final Object wakeMonitor = new Object();
+    // растет при каждой записи состояния; диспетчер по нему понимает, что маршрут надо перечитать
+    private volatile long planVersion;
+
+    // шаг step() вернул это значение - целей нет, ждем wakeUp
+    public static final double STEP_IDLE = -1.0;
+
+    private enum Phase { DECIDE, ARRIVING, DOORS_OPEN, DOORS_CLOSING }
+    // фаза автомата, меняется только тем, кто вызывает step()
+    private Phase phase = Phase.DECIDE;
+
+    // в событийном режиме планировщик узнает что лифт надо разбудить
+    private volatile Runnable wakeHandler;
+    private volatile ElevatorListener listener;
+
+    // куда свободный лифт едет ждать вызовов, -1 - стоит где остановился
+    private volatile int parkFloor = -1;
+
+    private volatile SimMetrics metrics;
+    private volatile ElevatorStats stats;
 
     public Elevator(int elevatorId, int startFloor) {
+        this(elevatorId, startFloor, SimConfig.defaults());
+    }
+
+    public Elevator(int elevatorId, int startFloor, SimConfig config) {
+        this(elevatorId, startFloor, config.capacity, config);
+    }
+
+    public Elevator(int elevatorId, int startFloor, int capacity, SimConfig config) {
         super("Лифт №" + elevatorId);
         setDaemon(true);
 
         id = elevatorId;
-        capacity = Config.CAPACITY;
+        this.capacity = capacity;
+        this.riders = new int[capacity];
+        floorTravelTime = config.floorTravelTime;
+        doorOpenTime = config.doorOpenTime;
+        doorCloseTime = config.doorCloseTime;
+
+        currentFloor = startFloor;
+        route = new Route(config.floors);
+        setMetrics(config.metrics());
+    }
 
-        state = new ElevatorState(startFloor, Direction.IDLE, ElevatorStatus.IDLE, new ArrayDeque<>());
+    // весь парк по конфигурации: номера с 1, группы подряд, старт равномерно по высоте
+    public static List<Elevator> fleet(SimConfig config) {
+        List<Elevator> fleet = new ArrayList<>(config.elevators);
+        for (int i = 0; i < config.elevators; i++) {
+            fleet.add(new Elevator(i + 1, config.startFloor(i), config.capacityOf(i), config));
+        }
+        return fleet;
+    }
+
+    public void setMetrics(SimMetrics metrics) {
+        this.metrics = metrics;
+        this.stats = metrics.elevator(id);
+    }
+
+    private void unlockWrite(long stamp) {
+        planVersion++;
+        lock.unlockWrite(stamp);
+    }
+
+    public long planVersion() {
+        return planVersion;
+    }
+
+    // маршрут для оценки ETA; то же оптимистичное чтение, что и в readState
+    public RoutePlan readPlan(RoutePlan into) {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                into.version = planVersion;
+                into.currentFloor = currentFloor;
+                into.direction = direction;
+                into.status = status;
+                into.load = load;
+                into.hallCalls = hallCount;
+                into.stops.copyFrom(route.stops);
+                into.destinations.copyFrom(route.destinations);
+                if (lock.validate(stamp)) break;
+            }
+            Thread.onSpinWait();
+        }
+
+        into.capacity = capacity;
+        into.travelTime = floorTravelTime;
+        into.doorOpenTime = doorOpenTime;
+        into.doorCloseTime = doorCloseTime;
+        return into;
+    }
+
+    // оптимистичное чтение: копируем поля и проверяем, что запись не вклинилась, иначе повторяем
+    public ElevatorState readState(ElevatorState into) {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                into.currentFloor = currentFloor;
+                into.direction = direction;
+                into.status = status;
+                into.load = load;
+                into.hallCalls = hallCount;
+                into.targets.copyFrom(targets);
+                into.hallTargets.copyFrom(hallTargets);
+                if (lock.validate(stamp)) return into;
+            }
+            Thread.onSpinWait();
+        }
     }
 
     public ElevatorState getStateSnapshot() {
-        lock.lock();
-        try {
-            return ElevatorState.copyOf(state);
-        } finally {
-            lock.unlock();
+        return readState(new ElevatorState());
+    }
+
+    public int getCurrentFloor() {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            int f = currentFloor;
+            if (stamp != 0 && lock.validate(stamp)) return f;
+            Thread.onSpinWait();
         }
     }
+
     // текущая загрузка сколько пассажиров внутри
     public int getLoad() {
-        lock.lock();
-        try {
-            return passengers.size();
-        } finally {
-            lock.unlock();
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            int l = load;
+            if (stamp != 0 && lock.validate(stamp)) return l;
+            Thread.onSpinWait();
         }
     }
 
@@ -54,257 +184,476 @@ public final class Elevator extends Thread {
     }
 
     public void addTarget(int floor) {
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
-            state.targets.addLast(floor);
+            targets.add(floor);
+            sync(floor);
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
         wakeUp();
     }
 
-    private CompletableFuture<Void> getArrivalFuture(int floor) {
-        return arrivalFutures.computeIfAbsent(floor, f -> new CompletableFuture<>());
+    public void subscribe(Flow.Subscriber<? super ElevatorEvent> subscriber) {
+        events.subscribe(subscriber);
     }
 
-    public boolean waitForArrival(int floor, long timeoutMs) {
-        try {
-            getArrivalFuture(floor).get(timeoutMs, java.util.concurrent.TimeUnit.MILLISECONDS);
-            return true;
-        } catch (Exception ignored) {
-            return false;
-        }
+    // пассажиру опустят signals.arrived, когда лифт откроет двери на этаже
+    // зовите до того, как нажать кнопку этажа, тогда прибытие не потеряется
+    public void expectArrival(int floor, RideSignals signals) {
+        arrivals.expect(floor, signals);
     }
+
     public void registerHallRequest(HallRequest req) {
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
             hallRequestsByFloor.computeIfAbsent(req.floor, f -> new ArrayList<>()).add(req);
+            hallBits(req.direction).add(req.floor);
+            sync(req.floor);
+            countIn(req);
+            if (req.targetFloor > 0) hallTarget(req.targetFloor, 1);
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
         wakeUp();
     }
 
-    public void passengerExit(String passengerId) {
-        lock.lock();
+    // снять еще не подобранный вызов, чтобы отдать его другому лифту
+    // false - пассажир уже сел (посадка и снятие идут под одной блокировкой записи)
+    public boolean unregisterHallRequest(HallRequest req) {
+        long stamp = lock.writeLock();
         try {
-            passengers.remove(passengerId);
+            List<HallRequest> list = hallRequestsByFloor.get(req.floor);
+            if (list == null || !list.remove(req)) return false;
+
+            boolean sameDirection = false;
+            for (HallRequest r : list) {
+                if (r.direction == req.direction) sameDirection = true;
+            }
+            if (!sameDirection) hallBits(req.direction).remove(req.floor);
+            sync(req.floor);
+            if (list.isEmpty()) hallRequestsByFloor.remove(req.floor);
+            if (req.targetFloor > 0) hallTarget(req.targetFloor, -1);
+            countOut(req);
+            return true;
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
     }
 
-    private void wakeUp() {
-        synchronized (wakeMonitor) {
-            wakeMonitor.notifyAll();
+    // пассажир на этаже ушел, не дождавшись: вызовы, за которыми никого не осталось, снимаются с маршрута,
+    // у остальных пересчитываются ждущие
+    public void dropAbandoned(int floor) {
+        List<HallRequest> empty = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            List<HallRequest> list = hallRequestsByFloor.get(floor);
+            if (list != null) {
+                for (HallRequest r : list) {
+                    recount(r);
+                    if (r.riders() == 0) empty.add(r);
+                }
+            }
+        } finally {
+            unlockWrite(stamp);
         }
+        // к вызову без людей присоединиться нельзя, между блокировками он не оживет
+        for (HallRequest r : empty) unregisterHallRequest(r);
     }
 
-    private Set<Integer> allPendingFloors() {
-        lock.lock();
+    // к назначенному сюда вызову присоединился пассажир - учесть его и сменить версию плана
+    // вызов могли уже посадить или отдать другому лифту - тогда он здесь не считается
+    public void hallRequestJoined(HallRequest lead) {
+        long stamp = lock.writeLock();
         try {
-            Set<Integer> floors = new HashSet<>(state.targets);
-            floors.addAll(hallRequestsByFloor.keySet());
-            return floors;
+            List<HallRequest> list = hallRequestsByFloor.get(lead.floor);
+            if (list != null && list.contains(lead)) recount(lead);
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
     }
 
+    // счетчик ждущих: вызов приносит своих при постановке на лифт, уносит их же при снятии,
+    // а присоединения и уходы добавляют разницу; все под блокировкой записи
+    private void countIn(HallRequest r) {
+        r.ridersCounted = r.riders();
+        hallCount += r.ridersCounted;
+    }
 
-    // смотрим вперед по направлению, если там нет целей - разворачиваемся
-    private Integer nextDestinationLook() {
-        int curr;
-        Direction dir;
+    private void countOut(HallRequest r) {
+        hallCount -= r.ridersCounted;
+        r.ridersCounted = 0;
+    }
+
+    private void recount(HallRequest r) {
+        int n = r.riders();
+        hallCount += n - r.ridersCounted;
+        r.ridersCounted = n;
+    }
+
+    // свободный лифт заранее едет туда, где скоро будут вызовы; двери там не открывает
+    // false - у лифта уже есть работа, парковка ему не нужна
+    public boolean park(int floor) {
+        long stamp = lock.writeLock();
+        try {
+            if (load > 0 || !targets.isEmpty() || hallCount > 0) return false;
+            parkFloor = floor;
+        } finally {
+            unlockWrite(stamp);
+        }
+        wakeUp();
+        return true;
+    }
+
+    public int getParkFloor() {
+        return parkFloor;
+    }
 
-        lock.lock();
+    public void passengerExit(int passenger) {
+        long stamp = lock.writeLock();
         try {
-            curr = state.currentFloor;
-            dir = state.direction;
+            for (int i = 0; i < load; i++) {
+                if (riders[i] != passenger) continue;
+                // порядок внутри кабины не важен - на место вышедшего ставим последнего
+                riders[i] = riders[--load];
+                loadChanged(load + 1);
+                break;
+            }
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
+    }
 
-        List<Integer> pending = new ArrayList<>(allPendingFloors());
-        if (pending.isEmpty()) return null;
+    // снимок лифта: состояние, кабина, маски и вызовы по этажам номерами заявок
+    // возвращает planVersion, с которой снят снимок, по ней Checkpoint понимает, что лифт с тех пор не менялся
+    public long save(SnapshotWriter out) {
+        long stamp = lock.readLock();
+        try {
+            out.putInt(id);
+            out.putInt(capacity);
+            out.putInt(currentFloor);
+            out.putByte(direction.ordinal());
+            out.putByte(status.ordinal());
+            out.putByte(phase.ordinal());
+            out.putInt(parkFloor);
+            out.putInt(load);
+            for (int i = 0; i < load; i++) out.putInt(riders[i]);
+            out.putInt(hallCount);
+            out.putFloors(targets);
+            out.putFloors(hallUp);
+            out.putFloors(hallDown);
+            out.putFloors(hallTargets);
+
+            out.putInt(hallRequestsByFloor.size());
+            for (Map.Entry<Integer, List<HallRequest>> e : hallRequestsByFloor.entrySet()) {
+                out.putInt(e.getKey());
+                out.putInt(e.getValue().size());
+                for (HallRequest r : e.getValue()) out.putRef(r);
+            }
+            return planVersion;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-        Collections.sort(pending);
+    // лифт должен быть тот же (номер и вместимость), что и в снятом прогоне, и еще не запущен
+    public void restore(SnapshotReader in) {
+        int savedId = in.getInt();
+        int savedCapacity = in.getInt();
+        if (savedId != id || savedCapacity != capacity) {
+            throw new IllegalStateException("Снимок другого парка: лифт " + savedId + " на " + savedCapacity
+                    + " вместо " + id + " на " + capacity);
+        }
 
-        List<Integer> higher = new ArrayList<>();
-        List<Integer> lower  = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            currentFloor = in.getInt();
+            direction = Direction.values()[in.getByte()];
+            status = ElevatorStatus.values()[in.getByte()];
+            phase = Phase.values()[in.getByte()];
+            parkFloor = in.getInt();
+            load = in.getInt();
+            if (riders.length < load) riders = new int[load];
+            for (int i = 0; i < load; i++) riders[i] = in.getInt();
+            in.getInt(); // счетчик ждущих, пересчитывается ниже по восстановленным вызовам
+            in.getFloors(targets);
+            in.getFloors(hallUp);
+            in.getFloors(hallDown);
+            in.getFloors(hallTargets);
+
+            hallRequestsByFloor.clear();
+            int floors = in.getInt();
+            for (int i = 0; i < floors; i++) {
+                int floor = in.getInt();
+                int n = in.getInt();
+                List<HallRequest> list = new ArrayList<>(n);
+                for (int k = 0; k < n; k++) list.add(in.getRef());
+                hallRequestsByFloor.put(floor, list);
+            }
 
-        for (int f : pending) {
-            if (f > curr) higher.add(f);
-            else if (f < curr) lower.add(f);
+            // маршрут не пишется в снимок - собираем его из восстановленных масок и вызовов, счетчик ждущих тоже
+            route.clearTargetRefs();
+            hallCount = 0;
+            for (List<HallRequest> list : hallRequestsByFloor.values()) {
+                for (HallRequest r : list) {
+                    if (r.targetFloor > 0) route.refTarget(r.targetFloor, 1);
+                    countIn(r);
+                }
+            }
+            route.rebuildStops(targets, hallUp, hallDown, load < capacity);
+            route.destinations.copyFrom(targets);
+            route.destinations.or(hallTargets);
+        } finally {
+            unlockWrite(stamp);
         }
+    }
+
+    public void setWakeHandler(Runnable wakeHandler) {
+        this.wakeHandler = wakeHandler;
+    }
+
+    public void setListener(ElevatorListener listener) {
+        this.listener = listener;
+    }
 
-        if (dir == Direction.UP) {
-            if (!higher.isEmpty()) return Collections.min(higher);
-            if (!lower.isEmpty())  return Collections.max(lower);
-            return curr;
+    private void wakeUp() {
+        synchronized (wakeMonitor) {
+            wakeMonitor.notifyAll();
         }
+        Runnable h = wakeHandler;
+        if (h != null) h.run();
+    }
+
+    // маршрут на этаже floor после изменения targets или вызовов; только под блокировкой записи
+    private void sync(int floor) {
+        route.sync(floor, targets, hallUp, hallDown, load < capacity);
+    }
 
-        if (dir == Direction.DOWN) {
-            if (!lower.isEmpty())  return Collections.max(lower);
-            if (!higher.isEmpty()) return Collections.min(higher);
-            return curr;
+    // на лифте стало на вызов больше (delta = 1) или меньше (-1) с целью floor
+    private void hallTarget(int floor, int delta) {
+        if (route.refTarget(floor, delta)) {
+            if (delta > 0) hallTargets.add(floor);
+            else hallTargets.remove(floor);
         }
+        sync(floor);
+    }
 
-        //просто ближайший по расстоянию
-        int best = pending.get(0);
-        int bestDist = Math.abs(best - curr);
-        for (int f : pending) {
-            int d = Math.abs(f - curr);
-            if (d < bestDist) {
-                bestDist = d;
-                best = f;
-            }
+    // лифт заполнился или в нем освободилось место - вызовы с этажей входят в маршрут или выходят из него
+    private void loadChanged(int before) {
+        if ((before < capacity) != (load < capacity)) route.rebuildStops(targets, hallUp, hallDown, load < capacity);
+    }
+
+    private FloorSet hallBits(Direction dir) {
+        return (dir == Direction.DOWN) ? hallDown : hallUp;
+    }
+
+    // смотрим вперед по направлению, если там нет целей - разворачиваемся
+    // -1 если ехать некуда; маршрут уже собран, остается два поиска бита
+    private int nextDestinationLook() {
+        // этаж и направление меняет только сам лифт, а этот метод зовет он же
+        int curr = currentFloor;
+        Direction dir = direction;
+
+        long stamp = lock.readLock();
+        try {
+            return route.next(curr, dir);
+        } finally {
+            lock.unlockRead(stamp);
         }
-        return best;
     }
 
     private void setDirectionTowards(int dest) {
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
-            if (dest > state.currentFloor) {
-                state = new ElevatorState(state.currentFloor, Direction.UP, state.status, state.targets);
-            } else if (dest < state.currentFloor) {
-                state = new ElevatorState(state.currentFloor, Direction.DOWN, state.status, state.targets);
-            } else {
-                state = new ElevatorState(state.currentFloor, Direction.IDLE, state.status, state.targets);
-            }
+            if (dest > currentFloor) direction = Direction.UP;
+            else if (dest < currentFloor) direction = Direction.DOWN;
+            else direction = Direction.IDLE;
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
     }
 
-    private void moveOneFloor() {
-        int curr;
-
-        lock.lock();
+    private void setMotion(Direction dir, ElevatorStatus st) {
+        long stamp = lock.writeLock();
         try {
-            state = new ElevatorState(state.currentFloor, state.direction, ElevatorStatus.MOVING, state.targets);
-
-            int step = state.direction.step();
-            if (step == 0) return;
-
-            int newFloor = state.currentFloor + step;
-            state = new ElevatorState(newFloor, state.direction, state.status, state.targets);
-
-            curr = newFloor;
+            direction = dir;
+            status = st;
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
+    }
 
-        sleepSec(Config.FLOOR_TRAVEL_TIME);
-        Logger.logLine("Местонахождение", "лифт", id, "этаж", curr);
+    private void moveOneFloor() {
+        long stamp = lock.writeLock();
+        try {
+            status = ElevatorStatus.MOVING;
+            currentFloor += direction.step();
+        } finally {
+            unlockWrite(stamp);
+        }
+        stats.moved(direction.step());
     }
     //проверяем, есть ли на этаже ожидающие заявки, которые подходят по направлению
     private boolean isHallRequestCompatible(int floor, Direction elevatorDir) {
-        List<HallRequest> list = hallRequestsByFloor.get(floor);
-        if (list == null || list.isEmpty()) return false;
-
-        if (elevatorDir == Direction.IDLE) return true;
+        if (elevatorDir == Direction.IDLE) return hallUp.contains(floor) || hallDown.contains(floor);
+        return hallBits(elevatorDir).contains(floor);
+    }
 
-        for (HallRequest r : list) {
-            if (r.direction == elevatorDir) return true;
-        }
-        return false;
+    // есть ли еще цели или вызовы дальше по ходу движения
+    private boolean hasPendingBeyond(int floor, Direction dir) {
+        return route.hasBeyond(floor, dir);
     }
 
     private boolean shouldStopHere(int floor) {
-        lock.lock();
+        long stamp = lock.readLock();
         try {
-            if (state.targets.contains(floor)) return true;
+            if (targets.contains(floor)) return true;
+            if (load >= capacity) return false;
 
             // по заявкам с этажа останавливаемся только если есть подходящее направление
-            return isHallRequestCompatible(floor, state.direction);
+            if (isHallRequestCompatible(floor, direction)) return true;
+
+            // дальше ехать некуда - разворачиваемся и забираем вызов в обратную сторону
+            // иначе лифт бесконечно качается между двумя встречными вызовами
+            return isHallRequestCompatible(floor, Direction.IDLE) && !hasPendingBeyond(floor, direction);
         } finally {
-            lock.unlock();
+            lock.unlockRead(stamp);
         }
     }
 
 
-    private void openCloseDoorsAndService() {
-        int floor;
+    private double openDoors() {
+        int floor = currentFloor;
 
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
-            state = new ElevatorState(state.currentFloor, state.direction, ElevatorStatus.DOORS_OPEN, state.targets);
-            floor = state.currentFloor;
+            // конец хода - на этаже можно брать пассажиров в любую сторону
+            if (!hasPendingBeyond(floor, direction)) direction = Direction.IDLE;
+            status = ElevatorStatus.DOORS_OPEN;
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
         Logger.logLine("Прибытие", "лифт", id, "этаж", floor);
+        publish(ElevatorEvent.Type.ARRIVED, floor, -1);
 
         Logger.logLine("Двери открыты", "лифт", id, "этаж", floor);
-        sleepSec(Config.DOOR_OPEN_TIME);
+        publish(ElevatorEvent.Type.DOORS_OPENED, floor, -1);
+        stats.stop();
+        phase = Phase.DOORS_OPEN;
+        return doorOpenTime;
+    }
+
+    // двери открыты - сажаем ожидающих и отпускаем приехавших
+    private void serviceFloor() {
+        int floor = currentFloor;
 
         //подбор ожидающих пассажиров
         List<HallRequest> picked;
 
-        lock.lock();
+        long stamp = lock.writeLock();
         try {
             List<HallRequest> waiting = hallRequestsByFloor.remove(floor);
             if (waiting == null) waiting = new ArrayList<>();
+            for (HallRequest r : waiting) {
+                if (r.targetFloor > 0) hallTarget(r.targetFloor, -1);
+                countOut(r);
+            }
 
-            int free = capacity - passengers.size();
+            int free = capacity - load;
             int canTake = Math.max(0, free);
 
             picked = new ArrayList<>();
             List<HallRequest> notPicked = new ArrayList<>();
             // направление лифта на момент открытия дверей
-            Direction elevatorDir = state.direction;
+            Direction elevatorDir = direction;
             // сначала подбираем тех, кто совпадает по направлению или любых, если лифт стоит
+            // за одним вызовом может стоять несколько человек - берем сколько влезет
             for (HallRequest r : waiting) {
                 boolean ok = (elevatorDir == Direction.IDLE) || (r.direction == elevatorDir);
-                if (ok && picked.size() < canTake) picked.add(r);
-                else notPicked.add(r);
+                if (!ok || picked.size() >= canTake) {
+                    notPicked.add(r);
+                    continue;
+                }
+
+                // кто ушел, не дождавшись, не садится и места не занимает
+                List<HallRequest> group = r.close();
+                int i = 0;
+                for (; i < group.size() && picked.size() < canTake; i++) {
+                    if (group.get(i).board()) picked.add(group.get(i));
+                }
+                List<HallRequest> rest = new ArrayList<>();
+                for (; i < group.size(); i++) {
+                    if (!group.get(i).isAbandoned()) rest.add(group.get(i));
+                }
+                if (!rest.isEmpty()) {
+                    HallRequest lead = rest.get(0);
+                    lead.adopt(r, rest.subList(1, rest.size()));
+                    notPicked.add(lead);
+                }
             }
             // не вошедшие остаются ждать на этаже
+            hallUp.remove(floor);
+            hallDown.remove(floor);
             if (!notPicked.isEmpty()) {
                 hallRequestsByFloor.computeIfAbsent(floor, f -> new ArrayList<>()).addAll(notPicked);
+                for (HallRequest r : notPicked) {
+                    hallBits(r.direction).add(floor);
+                    if (r.targetFloor > 0) hallTarget(r.targetFloor, 1);
+                    countIn(r);
+                }
+            }
+            sync(floor);
+
+            // цель известна заранее - лифт сам ставит ее при посадке, кнопка в кабине не нужна
+            // ожидание прибытия заводим тут же, до того как цель попала в маршрут
+            for (HallRequest r : picked) {
+                if (r.targetFloor > 0) {
+                    if (r.signals != null) expectArrival(r.targetFloor, r.signals);
+                    targets.add(r.targetFloor);
+                    sync(r.targetFloor);
+                }
             }
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
 
         for (HallRequest req : picked) {
-            lock.lock();
+            stamp = lock.writeLock();
             try {
-                passengers.add(req.passengerId);
+                if (load == riders.length) riders = Arrays.copyOf(riders, load * 2 + 1);
+                riders[load++] = req.passenger;
+                loadChanged(load - 1);
             } finally {
-                lock.unlock();
+                unlockWrite(stamp);
             }
-            req.pickedUp.countDown();
-            Logger.logLine("Посадка", "лифт", id, "этаж", floor, "пас", req.passengerId.substring(0, 4));
+            metrics.boarded(req);
+            req.pickUp(id);
+            Logger.logLine("Посадка", "лифт", id, "этаж", floor, "пас", req.passenger);
+            publish(ElevatorEvent.Type.BOARDED, floor, req.passenger);
+
+            ElevatorListener l = listener;
+            if (l != null) l.onBoarded(this, req);
         }
 
         //удаляем текущий этаж из целей если он там был
-        lock.lock();
+        stamp = lock.writeLock();
         try {
-            ArrayDeque<Integer> newTargets = new ArrayDeque<>();
-            for (int t : state.targets) {
-                if (t != floor) newTargets.addLast(t);
-            }
-            state = new ElevatorState(state.currentFloor, state.direction, state.status, newTargets);
+            targets.remove(floor);
+            sync(floor);
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
 
-        CompletableFuture<Void> f = getArrivalFuture(floor);
-        f.complete(null);
-        arrivalFutures.put(floor, new CompletableFuture<>());
+        ElevatorListener l = listener;
+        if (l != null) l.onServiced(this, floor);
 
         Logger.logLine("Двери закрываются", "лифт", id, "этаж", floor);
-        sleepSec(Config.DOOR_CLOSE_TIME);
+    }
 
-        lock.lock();
-        try {
-            state = new ElevatorState(state.currentFloor, state.direction, ElevatorStatus.IDLE, state.targets);
-        } finally {
-            lock.unlock();
-        }
+    // без подписчиков событие даже не создается
+    private void publish(ElevatorEvent.Type type, int floor, int passenger) {
+        if (!events.hasSubscribers()) return;
+        events.publish(new ElevatorEvent(type, id, floor, passenger, metrics.now()));
     }
 
     private static void sleepSec(double sec) {
@@ -314,66 +663,97 @@ public final class Elevator extends Thread {
             Thread.currentThread().interrupt();
         }
     }
-    @Override
-    public void run() {
-        Logger.logLine("Лифт запущен", "лифт", id, "этаж", getStateSnapshot().currentFloor);
 
-        while (true) {
-            Integer dest = nextDestinationLook();
-
-            if (dest == null) {
-                lock.lock();
-                try {
-                    state = new ElevatorState(state.currentFloor, Direction.IDLE, ElevatorStatus.IDLE, state.targets);
-                } finally {
-                    lock.unlock();
-                }
+    // один шаг автомата лифта
+    // возвращает сколько секунд длится начатое действие (движение, двери) или STEP_IDLE если делать нечего
+    // в потоковом режиме между шагами спим, в событийном - планировщик ставит следующий шаг на это время
+    public double step() {
+        double d = nextAction();
 
-                synchronized (wakeMonitor) {
-                    try {
-                        wakeMonitor.wait(500);
-                    } catch (InterruptedException ignored) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-                continue;
+        ElevatorStats s = stats;
+        if (d == STEP_IDLE) s.idle();
+        else s.busy(SimClock.toNanos(d));
+        return d;
+    }
+
+    private double nextAction() {
+        switch (phase) {
+            case ARRIVING: {
+                int curr = currentFloor;
+                Logger.debugLine("Местонахождение", "лифт", id, "этаж", curr);
+                if (shouldStopHere(curr)) return openDoors();
+                publish(ElevatorEvent.Type.PASSED_FLOOR, curr, -1);
+                return decide();
+            }
+            case DOORS_OPEN: {
+                serviceFloor();
+                stats.departed(getLoad(), capacity);
+                phase = Phase.DOORS_CLOSING;
+                return doorCloseTime;
+            }
+            case DOORS_CLOSING: {
+                setMotion(direction, ElevatorStatus.IDLE);
+                publish(ElevatorEvent.Type.DOORS_CLOSED, currentFloor, -1);
+                return decide();
             }
+            default:
+                return decide();
+        }
+    }
 
-            setDirectionTowards(dest);
+    private double decide() {
+        phase = Phase.DECIDE;
+        int dest = nextDestinationLook();
 
-            int curr = getStateSnapshot().currentFloor;
-            if (curr == dest) {
-                if (shouldStopHere(curr)) {
-                    openCloseDoorsAndService();
-                } else {
-                    lock.lock();
-                    try {
-                        state = new ElevatorState(state.currentFloor, Direction.IDLE, state.status, state.targets);
-                    } finally {
-                        lock.unlock();
-                    }
-                }
-                continue;
+        if (dest < 0) {
+            int park = parkFloor;
+            if (park > 0 && park != currentFloor) {
+                setDirectionTowards(park);
+                moveOneFloor();
+                phase = Phase.ARRIVING;
+                return floorTravelTime;
             }
+            if (park > 0) parkFloor = -1;
 
-            while (true) {
-                curr = getStateSnapshot().currentFloor;
-                if (curr == dest) break;
+            setMotion(Direction.IDLE, ElevatorStatus.IDLE);
+            return STEP_IDLE;
+        }
+        // появилась работа - парковка отменяется
+        if (parkFloor > 0) parkFloor = -1;
 
-                moveOneFloor();
-                curr = getStateSnapshot().currentFloor;
+        setDirectionTowards(dest);
 
-                if (shouldStopHere(curr)) {
-                    openCloseDoorsAndService();
+        int curr = currentFloor;
+        if (curr == dest) {
+            if (shouldStopHere(curr)) return openDoors();
 
-                    Integer newDest = nextDestinationLook();
-                    if (newDest == null) break;
+            setMotion(Direction.IDLE, status);
+            return 0.0;
+        }
+
+        moveOneFloor();
+        phase = Phase.ARRIVING;
+        return floorTravelTime;
+    }
 
-                    dest = newDest;
-                    setDirectionTowards(dest);
+    @Override
+    public void run() {
+        Logger.logLine("Лифт запущен", "лифт", id, "этаж", getCurrentFloor());
+
+        while (true) {
+            double d = step();
+
+            if (d == STEP_IDLE) {
+                synchronized (wakeMonitor) {
+                    try {
+                        wakeMonitor.wait(500);
+                    } catch (InterruptedException ignored) {
+                        Thread.currentThread().interrupt();
+                    }
                 }
+            } else if (d > 0) {
+                sleepSec(d);
             }
-
         }
     }
 }
@@ -0,0 +1,26 @@
+package elevator_sim.models;
+
+// событие лифта в потоке Elevator.subscribe(); время - по часам метрик (в событийном режиме модельное)
+public final class ElevatorEvent {
+    public enum Type { ARRIVED, DOORS_OPENED, BOARDED, DOORS_CLOSED, PASSED_FLOOR }
+
+    public final Type type;
+    public final int elevatorId;
+    public final int floor;
+    // только для BOARDED, иначе -1
+    public final int passenger;
+    public final long timeNanos;
+
+    public ElevatorEvent(Type type, int elevatorId, int floor, int passenger, long timeNanos) {
+        this.type = type;
+        this.elevatorId = elevatorId;
+        this.floor = floor;
+        this.passenger = passenger;
+        this.timeNanos = timeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return type + " лифт=" + elevatorId + " этаж=" + floor + (passenger >= 0 ? " пас=" + passenger : "");
+    }
+}
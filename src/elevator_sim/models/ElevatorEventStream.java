@@ -0,0 +1,97 @@
+package elevator_sim.models;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// поток событий одного лифта без потерь: у каждого подписчика своя очередь,
+// событие уходит ему, только когда он его запросил через request(n), остальное ждет в очереди
+// лифт подписчиков не ждет: publish кладет событие и отдает, сколько разрешено спросом, прямо в потоке лифта,
+// запрошенное позже доставляет сам request в потоке подписчика; поэтому onNext должен быть коротким
+final class ElevatorEventStream implements Flow.Publisher<ElevatorEvent> {
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ElevatorEvent> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription s = new Subscription(subscriber);
+        subscriptions.add(s);
+        subscriber.onSubscribe(s);
+    }
+
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    void publish(ElevatorEvent event) {
+        for (Subscription s : subscriptions) s.offer(event);
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ElevatorEvent> subscriber;
+        private final Queue<ElevatorEvent> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        // сколько раз просили доставить; доставляет один поток, остальные только увеличивают счетчик
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        Subscription(Flow.Subscriber<? super ElevatorEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(ElevatorEvent event) {
+            queue.offer(event);
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) return;
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request(" + n + "): спрос должен быть положительным"));
+                return;
+            }
+            // Long.MAX_VALUE - без ограничений, дальше не считаем
+            demand.accumulateAndGet(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            queue.clear();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+
+            int missed = 1;
+            do {
+                long d = demand.get();
+                long sent = 0;
+                while (sent != d && !cancelled) {
+                    ElevatorEvent e = queue.poll();
+                    if (e == null) break;
+                    try {
+                        subscriber.onNext(e);
+                    } catch (RuntimeException ex) {
+                        // упавший подписчик отписывается, лифт и остальные подписчики едут дальше
+                        cancel();
+                        subscriber.onError(ex);
+                        return;
+                    }
+                    sent++;
+                }
+                if (sent != 0 && d != Long.MAX_VALUE) demand.addAndGet(-sent);
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package elevator_sim.models;
+
+// обратные вызовы лифта для событийного режима, где пассажиры не блокируют поток
+public interface ElevatorListener {
+    // пассажир с этой заявкой сел в лифт
+    void onBoarded(Elevator elevator, HallRequest req);
+
+    // двери открыты на этаже, посадка закончена - выходят те, кто ехал сюда
+    void onServiced(Elevator elevator, int floor);
+}
@@ -1,29 +1,18 @@
 package elevator_sim.models;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-
+// снимок состояния лифта из примитивов
+// читатель держит свой экземпляр и перезаписывает его через Elevator.readState - без аллокаций и блокировок
 public final class ElevatorState {
-    public final int currentFloor;
-    public final Direction direction;
-    public final ElevatorStatus status;
+    public int currentFloor;
+    public Direction direction = Direction.IDLE;
+    public ElevatorStatus status = ElevatorStatus.IDLE;
+    // сколько пассажиров внутри
+    public int load;
+    // назначенные, но еще не подобранные вызовы с этажей
+    public int hallCalls;
 
     // куда лифт должен приехать внутренние кнопки
-    public final Deque<Integer> targets;
-    public ElevatorState(int currentFloor, Direction direction, ElevatorStatus status, Deque<Integer> targets) {
-        this.currentFloor = currentFloor;
-        this.direction = direction;
-        this.status = status;
-        this.targets = targets;
-    }
-
-    //чтобы диспетчер/логика не читали живую структуру, пока лифт ее меняет
-    public static ElevatorState copyOf(ElevatorState st) {
-        return new ElevatorState(
-                st.currentFloor,
-                st.direction,
-                st.status,
-                new ArrayDeque<>(st.targets)
-        );
-    }
+    public final FloorSet targets = new FloorSet();
+    // куда едут назначенные, но еще не севшие пассажиры (известно только при вызове по назначению)
+    public final FloorSet hallTargets = new FloorSet();
 }
@@ -0,0 +1,141 @@
+package elevator_sim.models;
+
+import elevator_sim.Config;
+
+import java.util.Arrays;
+
+// множество этажей как битовая маска, бит N - этаж N
+// до 63 этажа хватает одного long, для высоких домов слов больше
+public final class FloorSet {
+
+    private long[] words;
+    private int size;
+
+    public FloorSet() {
+        this(Config.FLOORS);
+    }
+
+    public FloorSet(int maxFloor) {
+        words = new long[(maxFloor >>> 6) + 1];
+    }
+
+    private void ensure(int floor) {
+        int w = floor >>> 6;
+        if (w >= words.length) words = Arrays.copyOf(words, w + 1);
+    }
+
+    public boolean add(int floor) {
+        ensure(floor);
+        int w = floor >>> 6;
+        long bit = 1L << floor;
+        if ((words[w] & bit) != 0) return false;
+
+        words[w] |= bit;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int floor) {
+        int w = floor >>> 6;
+        if (w >= words.length) return false;
+
+        long bit = 1L << floor;
+        if ((words[w] & bit) == 0) return false;
+
+        words[w] &= ~bit;
+        size--;
+        return true;
+    }
+
+    public boolean contains(int floor) {
+        int w = floor >>> 6;
+        return w < words.length && (words[w] & (1L << floor)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+        size = 0;
+    }
+
+    // ближайший этаж >= from или -1
+    public int nextSetBit(int from) {
+        if (from < 0) from = 0;
+        int w = from >>> 6;
+        if (w >= words.length) return -1;
+
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    // ближайший этаж <= from или -1
+    public int prevSetBit(int from) {
+        if (from < 0) return -1;
+        int w = from >>> 6;
+        long word;
+        if (w >= words.length) {
+            w = words.length - 1;
+            word = words[w];
+        } else {
+            word = words[w] & (-1L >>> (63 - (from & 63)));
+        }
+
+        while (true) {
+            if (word != 0) return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+            if (w-- == 0) return -1;
+            word = words[w];
+        }
+    }
+
+    // сколько этажей в отрезке [from, to]
+    public int count(int from, int to) {
+        if (from < 0) from = 0;
+        int last = (words.length << 6) - 1;
+        if (to > last) to = last;
+        if (from > to) return 0;
+
+        int fw = from >>> 6;
+        int tw = to >>> 6;
+        long fromMask = -1L << from;
+        long toMask = -1L >>> (63 - (to & 63));
+        if (fw == tw) return Long.bitCount(words[fw] & fromMask & toMask);
+
+        int n = Long.bitCount(words[fw] & fromMask);
+        for (int i = fw + 1; i < tw; i++) n += Long.bitCount(words[i]);
+        return n + Long.bitCount(words[tw] & toMask);
+    }
+
+    // объединение на месте
+    public void or(FloorSet other) {
+        long[] src = other.words;
+        if (words.length < src.length) words = Arrays.copyOf(words, src.length);
+
+        int n = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (i < src.length) words[i] |= src[i];
+            n += Long.bitCount(words[i]);
+        }
+        size = n;
+    }
+
+    // копия без новых массивов, если размер уже подходит
+    public void copyFrom(FloorSet other) {
+        long[] src = other.words;
+        if (words.length < src.length) words = new long[src.length];
+
+        System.arraycopy(src, 0, words, 0, src.length);
+        Arrays.fill(words, src.length, words.length, 0L);
+        size = other.size;
+    }
+}
@@ -1,20 +1,193 @@
 package elevator_sim.models;
 
-import java.time.Instant;
-import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public final class HallRequest extends Request {
     public final int floor;
     public final Direction direction;
-    public volatile Integer assignedElevatorId = null;
+    // цель пассажира при вызове по назначению (destination dispatch), 0 - неизвестна до посадки
+    public final int targetFloor;
+    // номер назначенного лифта, UNASSIGNED - еще нет или назначить не удалось
+    public volatile int assignedElevatorId = UNASSIGNED;
+    public static final int UNASSIGNED = -1;
+    // метки для метрик по часам симуляции, -1 пока не было
+    public volatile long submittedAt = -1;
+    public volatile long pickedUpAt = -1;
+    // сколько раз вызов отдавали другому лифту
+    public volatile int reassignments;
+    // null - никто не ждет в отдельном потоке (событийный режим)
+    public final RideSignals signals;
+    private volatile boolean pickedUp;
+    // пассажир ушел с этажа, не дождавшись; лифт его уже не посадит
+    private volatile boolean abandoned;
+    // лифт начал сажать пассажира - уходить поздно
+    private boolean boarding;
+
+    // одна кнопка на этаж и направление: первый нажавший ведет вызов, остальные присоединяются
+    // и получают его назначение; при посадке вызов закрывается, следующий пассажир нажимает заново
+    private List<HallRequest> joined;
+    private boolean closed;
+    // кто не влез в кабину при посадке этого вызова
+    private HallRequest remainder;
+    // сколько ждущих этого вызова учтено в счетчике лифта, на котором он стоит; пишет только тот лифт под своей блокировкой
+    int ridersCounted;
 
-    public final CountDownLatch assignedEvent = new CountDownLatch(1); // лифт назначен
-    public final CountDownLatch pickedUp = new CountDownLatch(1);      // пассажир сел
+    public HallRequest(int floor, Direction direction, int passenger, long number) {
+        this(floor, direction, 0, passenger, number, null);
+    }
+
+    public HallRequest(int floor, Direction direction, int targetFloor, int passenger, long number) {
+        this(floor, direction, targetFloor, passenger, number, null);
+    }
 
-    public HallRequest(int floor, Direction direction, String passengerId, int number) {
-        super(UUID.randomUUID().toString().substring(0, 8), number, Instant.now(), passengerId, RequestType.HALL);
+    public HallRequest(int floor, Direction direction, int targetFloor, int passenger, long number, RideSignals signals) {
+        super(number, passenger, RequestType.HALL);
         this.floor = floor;
         this.direction = direction;
+        this.targetFloor = targetFloor;
+        this.signals = signals;
+    }
+
+    public boolean isPickedUp() {
+        return pickedUp;
+    }
+
+    // лифт посадил пассажира
+    public void pickUp(int elevatorId) {
+        // пассажир мог присоединиться к чужому вызову - едет в том лифте, что приехал
+        assignedElevatorId = elevatorId;
+        pickedUp = true;
+        if (signals != null) signals.pickedUp.countDown();
+    }
+
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    // пассажир уходит; false - лифт уже сажает его, тогда посадка вот-вот случится
+    public synchronized boolean abandon() {
+        if (boarding) return false;
+        abandoned = true;
+        return true;
+    }
+
+    // лифт берет пассажира под своей блокировкой; false - тот уже ушел и места не занимает
+    synchronized boolean board() {
+        if (abandoned) return false;
+        boarding = true;
+        return true;
+    }
+
+    private static void signalAssigned(HallRequest r) {
+        if (r.signals != null) r.signals.assigned.countDown();
+    }
+
+    // false - лифт уже забирает этот вызов, за ним уже кабина людей или, наоборот, все ушли
+    // (такой вызов лифт снимает с маршрута), нужен новый
+    public synchronized boolean join(HallRequest other, int maxRiders) {
+        int riders = riders();
+        if (closed || riders == 0 || riders >= maxRiders) return false;
+
+        if (joined == null) joined = new ArrayList<>();
+        joined.add(other);
+        int elevatorId = assignedElevatorId;
+        if (elevatorId != UNASSIGNED) {
+            other.assignedElevatorId = elevatorId;
+            signalAssigned(other);
+        }
+        return true;
+    }
+
+    // назначение вызова - назначение всех, кто к нему присоединился; UNASSIGNED - назначить не удалось, не ждите
+    public synchronized void assignTo(int elevatorId) {
+        assignedElevatorId = elevatorId;
+        signalAssigned(this);
+        if (joined == null) return;
+
+        for (HallRequest r : joined) {
+            r.assignedElevatorId = elevatorId;
+            signalAssigned(r);
+        }
+    }
+
+    // сколько человек стоит за вызовом, ушедшие не в счет; 0 - ждать некому, и уже не будет
+    public synchronized int riders() {
+        int n = abandoned ? 0 : 1;
+        if (joined == null) return n;
+        for (HallRequest r : joined) {
+            if (!r.abandoned) n++;
+        }
+        return n;
+    }
+
+    // лифт открыл двери: к вызову больше не присоединиться; ведущий первым, дальше по порядку прихода
+    public synchronized List<HallRequest> close() {
+        closed = true;
+        List<HallRequest> all = new ArrayList<>(riders());
+        all.add(this);
+        if (joined != null) all.addAll(joined);
+        return all;
+    }
+
+    // кто не влез в кабину - остается вызовом на этом же лифте, первый из них теперь ведущий
+    // диспетчер найдет его через remainder() и сможет отдать другому лифту
+    public synchronized void adopt(HallRequest lead, List<HallRequest> rest) {
+        lead.remainder = this;
+        if (rest.isEmpty()) return;
+        if (joined == null) joined = new ArrayList<>();
+        joined.addAll(rest);
+    }
+
+    public synchronized HallRequest remainder() {
+        return remainder;
+    }
+
+    // снимок: сначала поля всех заявок, потом связи, чтобы ссылка всегда вела на уже созданную заявку
+    // ждущих потоков в событийном режиме нет, сигналы не сохраняются
+    public synchronized void saveFields(SnapshotWriter out) {
+        out.putLong(номер);
+        out.putInt(passenger);
+        out.putInt(floor);
+        out.putByte(direction.ordinal());
+        out.putInt(targetFloor);
+        out.putInt(assignedElevatorId);
+        out.putLong(submittedAt);
+        out.putLong(pickedUpAt);
+        out.putInt(reassignments);
+        out.putBoolean(pickedUp);
+        out.putBoolean(closed);
+    }
+
+    public synchronized void saveLinks(SnapshotWriter out) {
+        int n = (joined == null) ? 0 : joined.size();
+        out.putInt(n);
+        for (int i = 0; i < n; i++) out.putRef(joined.get(i));
+        out.putRef(remainder);
+    }
+
+    public static HallRequest restore(SnapshotReader in) {
+        long number = in.getLong();
+        int passenger = in.getInt();
+        int floor = in.getInt();
+        Direction direction = Direction.values()[in.getByte()];
+        HallRequest r = new HallRequest(floor, direction, in.getInt(), passenger, number);
+        r.assignedElevatorId = in.getInt();
+        r.submittedAt = in.getLong();
+        r.pickedUpAt = in.getLong();
+        r.reassignments = in.getInt();
+        r.pickedUp = in.getBoolean();
+        r.closed = in.getBoolean();
+        return r;
+    }
+
+    public synchronized void restoreLinks(SnapshotReader in) {
+        int n = in.getInt();
+        joined = (n == 0) ? null : new ArrayList<>(n);
+        for (int i = 0; i < n; i++) joined.add(in.getRef());
+        remainder = in.getRef();
     }
 }
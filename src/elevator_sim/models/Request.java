@@ -1,19 +1,15 @@
 package elevator_sim.models;
 
-import java.time.Instant;
-
+// заявка - компактная запись из примитивов: номер из счетчика, пассажир - индекс, без строк и объектов времени
+// время поступления ставит метрика по часам симуляции (HallRequest.submittedAt)
 public abstract class Request {
-    public final String id;
-    public final int номер;
-    public final Instant timestamp;
-    public final String passengerId;
+    public final long номер;
+    public final int passenger;
     public final RequestType requestType;
 
-    protected Request(String id, int номер, Instant timestamp, String passengerId, RequestType requestType) {
-        this.id = id;
+    protected Request(long номер, int passenger, RequestType requestType) {
         this.номер = номер;
-        this.timestamp = timestamp;
-        this.passengerId = passengerId;
+        this.passenger = passenger;
         this.requestType = requestType;
     }
 }
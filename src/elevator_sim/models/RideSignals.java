@@ -0,0 +1,13 @@
+package elevator_sim.models;
+
+import java.util.concurrent.CountDownLatch;
+
+// сигналы для пассажира, который ждет поездку в своем потоке; заявка их только дергает
+// в событийном режиме пассажир - запись в симуляции, сигналы ему не нужны и не создаются
+public final class RideSignals {
+    public final CountDownLatch assigned = new CountDownLatch(1); // лифт назначен
+    public final CountDownLatch pickedUp = new CountDownLatch(1); // пассажир сел
+    // лифт открыл двери на цели; ожидание заводит Elevator.expectArrival,
+    // при известной заранее цели - сам лифт при посадке
+    public final CountDownLatch arrived = new CountDownLatch(1);
+}
@@ -0,0 +1,81 @@
+package elevator_sim.models;
+
+import java.util.Arrays;
+
+// маршрут лифта, который ведется по ходу дела, а не собирается заново при каждом вопросе
+// stops - где лифт остановится: кнопки из кабины и, пока есть место, вызовы с этажей;
+// биты выше текущего этажа - подъем по порядку, ниже - спуск, вставка и снятие остановки O(1)
+// destinations - куда едут пассажиры: кнопки из кабины и цели ждущих при вызове по назначению
+// меняет только Elevator под своей блокировкой записи
+final class Route {
+    final FloorSet stops;
+    final FloorSet destinations;
+    // сколько вызовов на лифте едут на этаж (вызов по назначению); бит hallTargets стоит, пока счетчик > 0
+    private int[] targetRefs;
+
+    Route(int floors) {
+        stops = new FloorSet(floors);
+        destinations = new FloorSet(floors);
+        targetRefs = new int[floors + 1];
+    }
+
+    // этаж floor после изменения одной из масок лифта
+    void sync(int floor, FloorSet targets, FloorSet hallUp, FloorSet hallDown, boolean takesHalls) {
+        boolean stop = targets.contains(floor) || (takesHalls && (hallUp.contains(floor) || hallDown.contains(floor)));
+        if (stop) stops.add(floor);
+        else stops.remove(floor);
+
+        if (targets.contains(floor) || targetRef(floor) > 0) destinations.add(floor);
+        else destinations.remove(floor);
+    }
+
+    // полный лифт вызовы с этажей не берет: при переходе через вместимость маршрут собирается заново
+    void rebuildStops(FloorSet targets, FloorSet hallUp, FloorSet hallDown, boolean takesHalls) {
+        stops.copyFrom(targets);
+        if (takesHalls) {
+            stops.or(hallUp);
+            stops.or(hallDown);
+        }
+    }
+
+    // +1 / -1 вызов с целью floor; true - этаж появился в hallTargets или пропал из них
+    boolean refTarget(int floor, int delta) {
+        if (floor >= targetRefs.length) targetRefs = Arrays.copyOf(targetRefs, floor + 1);
+        int before = targetRefs[floor];
+        targetRefs[floor] = Math.max(0, before + delta);
+        return (before > 0) != (targetRefs[floor] > 0);
+    }
+
+    private int targetRef(int floor) {
+        return (floor < targetRefs.length) ? targetRefs[floor] : 0;
+    }
+
+    void clearTargetRefs() {
+        Arrays.fill(targetRefs, 0);
+    }
+
+    // LOOK: вперед по ходу, если там пусто - разворот; стоящий едет к ближайшей остановке, при равенстве вниз
+    // -1 если ехать некуда; два поиска бита в одной маске
+    int next(int current, Direction dir) {
+        int higher = stops.nextSetBit(current + 1);
+        int lower = stops.prevSetBit(current - 1);
+        boolean here = stops.contains(current);
+
+        if (higher < 0 && lower < 0) return here ? current : -1;
+
+        if (dir == Direction.UP) return (higher >= 0) ? higher : lower;
+        if (dir == Direction.DOWN) return (lower >= 0) ? lower : higher;
+
+        if (here) return current;
+        if (higher < 0) return lower;
+        if (lower < 0) return higher;
+        return (current - lower <= higher - current) ? lower : higher;
+    }
+
+    // есть ли остановки дальше по ходу
+    boolean hasBeyond(int floor, Direction dir) {
+        if (dir == Direction.UP) return stops.nextSetBit(floor + 1) >= 0;
+        if (dir == Direction.DOWN) return stops.prevSetBit(floor - 1) >= 0;
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package elevator_sim.models;
+
+// все, что лифт уже собирается сделать, для оценки времени прибытия
+// диспетчер держит по экземпляру на лифт и перечитывает его, только когда planVersion() сдвинулся
+public final class RoutePlan {
+    // версия состояния лифта, с которой снят план; -1 - еще не читали
+    public long version = -1;
+
+    public int currentFloor;
+    public Direction direction = Direction.IDLE;
+    public ElevatorStatus status = ElevatorStatus.IDLE;
+    public int load;
+    public int capacity;
+    public int hallCalls;
+
+    // где лифт остановится: кнопки из кабины и принятые вызовы с этажей
+    public final FloorSet stops = new FloorSet();
+    // куда едут пассажиры: кнопки из кабины и цели ждущих при вызове по назначению
+    public final FloorSet destinations = new FloorSet();
+
+    public double travelTime;
+    public double doorOpenTime;
+    public double doorCloseTime;
+
+    // одна лишняя остановка: открыть и закрыть двери
+    public double dwellTime() {
+        return doorOpenTime + doorCloseTime;
+    }
+}
@@ -0,0 +1,93 @@
+package elevator_sim.simulation;
+
+import elevator_sim.engine.Actor;
+import elevator_sim.engine.TimerWheel;
+import elevator_sim.models.Elevator;
+import elevator_sim.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// реальное время без потока на лифт: каждый лифт - автомат step() со своим почтовым ящиком,
+// все ящики разбирает маленький пул, паузы между шагами отсчитывает колесо таймеров
+// простаивающий лифт не занимает ни потока, ни процессора, его будит wakeHandler при новой заявке
+// так на одной машине помещаются тысячи лифтов (-Dsim.runtime=loop, -Dloop.threads=N)
+public final class ElevatorLoop implements AutoCloseable {
+    private static final long TICK_MS = 10;
+    private static final int BUCKETS = 512;
+
+    // состояние лифта в цикле трогает только его актор
+    private static final class Car {
+        final Elevator elevator;
+        final Actor actor;
+        boolean idle;
+
+        Car(Elevator elevator, Actor actor) {
+            this.elevator = elevator;
+            this.actor = actor;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final TimerWheel wheel;
+    private final List<Car> cars = new ArrayList<>();
+
+    public ElevatorLoop(List<Elevator> elevators) {
+        this(elevators, Integer.getInteger("loop.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ElevatorLoop(List<Elevator> elevators, int threads) {
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), daemonFactory());
+        wheel = new TimerWheel(TICK_MS, BUCKETS, pool);
+
+        for (Elevator e : elevators) {
+            Car car = new Car(e, new Actor("Лифт №" + e.id, pool));
+            // заявка могла прийти, пока лифт делал шаг: сообщение встанет в ящик за шагом и увидит idle
+            e.setWakeHandler(() -> car.actor.execute(() -> wake(car)));
+            cars.add(car);
+        }
+    }
+
+    private static ThreadFactory daemonFactory() {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "Лифты-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    public void start() {
+        for (Car car : cars) {
+            Logger.logLine("Лифт запущен", "лифт", car.elevator.id, "этаж", car.elevator.getCurrentFloor());
+            car.actor.execute(() -> advance(car));
+        }
+    }
+
+    private void advance(Car car) {
+        double d = car.elevator.step();
+        if (d == Elevator.STEP_IDLE) {
+            car.idle = true;
+        } else if (d == 0.0) {
+            car.actor.execute(() -> advance(car));
+        } else {
+            wheel.schedule(d, () -> car.actor.execute(() -> advance(car)));
+        }
+    }
+
+    private void wake(Car car) {
+        if (!car.idle) return;
+        car.idle = false;
+        advance(car);
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+        pool.shutdownNow();
+    }
+}
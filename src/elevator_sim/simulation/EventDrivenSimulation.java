@@ -0,0 +1,496 @@
+package elevator_sim.simulation;
+
+import elevator_sim.Config;
+import elevator_sim.SimConfig;
+import elevator_sim.dispatcher.DispatchStrategy;
+import elevator_sim.dispatcher.RequestDispatcher;
+import elevator_sim.engine.EventScheduler;
+import elevator_sim.engine.SimClock;
+import elevator_sim.metrics.SimMetrics;
+import elevator_sim.models.*;
+import elevator_sim.snapshot.Checkpoint;
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+import elevator_sim.trace.TraceReader;
+import elevator_sim.trace.TraceRecord;
+import elevator_sim.trace.TraceWriter;
+import elevator_sim.utils.Logger;
+import elevator_sim.workload.Arrival;
+import elevator_sim.workload.ArrivalStream;
+import elevator_sim.workload.Workload;
+
+import java.nio.file.Path;
+import java.util.*;
+
+// событийный режим: лифты, диспетчер и пассажиры работают как события на виртуальных часах
+// нет Thread.sleep, час движения считается за доли секунды, при одном seed результат всегда один и тот же
+public final class EventDrivenSimulation implements ElevatorListener {
+
+    // пассажир в событийном режиме - просто запись, поток ему не нужен
+    private static final class Rider {
+        final int passenger;
+        final int start;
+        final int target;
+        HallRequest hall;
+
+        Rider(int passenger, int start, int target) {
+            this.passenger = passenger;
+            this.start = start;
+            this.target = target;
+        }
+    }
+
+    // события - записи с видом и аргументами, а не лямбды: снимок перечисляет очередь планировщика
+    // и пишет, что в ней стоит, а восстановление ставит те же события на те же моменты
+    private enum Kind { ADVANCE, ARRIVE, REPLAY, REBALANCE, PARK, DRAIN, CHECKPOINT }
+
+    private final class Pending implements Runnable {
+        final Kind kind;
+        final int a;
+        final int b;
+        final int c;
+
+        Pending(Kind kind) {
+            this(kind, 0, 0, 0);
+        }
+
+        Pending(Kind kind, int a, int b, int c) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        @Override
+        public void run() {
+            switch (kind) {
+                case ADVANCE -> advance(a);
+                case ARRIVE -> arrive();
+                case REPLAY -> {
+                    spawn(a, b, c);
+                    scheduleReplay();
+                }
+                case REBALANCE -> rebalance();
+                case PARK -> park();
+                case DRAIN -> {
+                    drainScheduled = false;
+                    dispatcher.drainPending();
+                }
+                case CHECKPOINT -> periodicCheckpoint();
+            }
+        }
+    }
+
+    private final EventScheduler scheduler;
+    // метрики на виртуальных часах: секунды ожидания - модельные секунды
+    private final SimMetrics metrics;
+    private final List<Elevator> elevators;
+    private final RequestDispatcher dispatcher;
+    private int maxPassengers;
+    private long seed;
+    // откуда, куда и когда приходят пассажиры; следующее прибытие уже вытянуто из потока
+    private ArrivalStream arrivals;
+    private final Arrival next = new Arrival();
+    // первые пассажиры приходят через секунду после старта, когда лифты уже на местах
+    private static final double ARRIVALS_FROM = 1.0;
+
+    private TraceWriter recorder;
+    private TraceReader replay;
+    private double replaySpeed = 1.0;
+    private final TraceRecord replayRecord = new TraceRecord();
+
+    private final Map<HallRequest, Rider> waiting = new HashMap<>();
+    private final Map<Integer, List<Rider>> ridersByElevator = new HashMap<>();
+    // лифт (индекс в elevators) вернул STEP_IDLE и ждет, пока его разбудят
+    private final Set<Integer> parked = new HashSet<>();
+
+    // пакетный диспетчер разбирает очередь раз в окно модельного времени
+    private boolean drainScheduled = false;
+
+    private int generated = 0;
+    private int delivered = 0;
+    // сквозной номер заявки, как RequestNumber в потоковом генераторе
+    private long requestNumber = 0;
+
+    // снимки по ходу прогона; кодировщик живет между снимками, чтобы не кодировать стоящие лифты заново
+    private Checkpoint checkpoint;
+    private Path checkpointFile;
+    private double checkpointEvery;
+    // прогон продолжен из снимка: лифты, пассажиры и события уже на местах
+    private boolean resumed = false;
+
+    public EventDrivenSimulation(List<Elevator> elevators, int floors, int maxPassengers, long seed) {
+        this(elevators, SimConfig.defaults().withFloors(floors), maxPassengers, seed);
+    }
+
+    public EventDrivenSimulation(List<Elevator> elevators, SimConfig config, int maxPassengers, long seed) {
+        this(elevators, config, maxPassengers, seed, new EventScheduler());
+    }
+
+    private EventDrivenSimulation(List<Elevator> elevators, SimConfig config, int maxPassengers, long seed,
+                                  EventScheduler scheduler) {
+        this(elevators, config, maxPassengers, seed, scheduler, new SimMetrics(scheduler));
+    }
+
+    // часы и метрики прогона приходят снаружи, чтобы лифты с первого же конструктора писали в них
+    private EventDrivenSimulation(List<Elevator> elevators, SimConfig config, int maxPassengers, long seed,
+                                  EventScheduler scheduler, SimMetrics metrics) {
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.elevators = elevators;
+        this.dispatcher = RequestDispatcher.create(elevators, config);
+        this.seed = seed;
+        this.arrivals = Workload.fromProperty(config).stream(seed);
+        this.maxPassengers = maxPassengers;
+        dispatcher.setMetrics(metrics);
+
+        for (int i = 0; i < elevators.size(); i++) {
+            Elevator e = elevators.get(i);
+            int index = i;
+            ridersByElevator.put(e.id, new ArrayList<>());
+            e.setListener(this);
+            e.setWakeHandler(() -> wake(index));
+            e.setMetrics(metrics);
+        }
+    }
+
+    // своя нагрузка вместо -Dworkload; вызывать до run()
+    public void useWorkload(Workload workload) {
+        this.arrivals = workload.stream(seed);
+    }
+
+    public void recordTo(TraceWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    // пассажиры берутся из трассы, число пассажиров - сколько в ней вызовов с этажа
+    public void replayFrom(TraceReader replay, double speed) {
+        this.replay = replay;
+        this.replaySpeed = speed;
+        this.maxPassengers = (int) replay.hallCalls();
+    }
+
+    public SimMetrics metrics() {
+        return metrics;
+    }
+
+    public List<Elevator> elevators() {
+        return elevators;
+    }
+
+    public EventScheduler scheduler() {
+        return scheduler;
+    }
+
+    public RequestDispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    private void submit(Object req) {
+        dispatcher.submitRequest(req);
+        if (dispatcher.isBatching() && !drainScheduled) {
+            drainScheduled = true;
+            scheduler.schedule(Config.DISPATCH_BATCH_WINDOW_MS / 1000.0, new Pending(Kind.DRAIN));
+        }
+    }
+
+    private void advance(int index) {
+        double d = elevators.get(index).step();
+        if (d == Elevator.STEP_IDLE) parked.add(index);
+        else scheduler.schedule(d, new Pending(Kind.ADVANCE, index, 0, 0));
+    }
+
+    private void wake(int index) {
+        if (parked.remove(index)) scheduler.schedule(0.0, new Pending(Kind.ADVANCE, index, 0, 0));
+    }
+
+    private void arrive() {
+        spawn(generated, next.origin, next.destination);
+        if (generated < maxPassengers) scheduleArrival();
+    }
+
+    private void scheduleArrival() {
+        arrivals.next(next);
+        scheduler.scheduleAt(SimClock.toNanos(ARRIVALS_FROM + next.time), new Pending(Kind.ARRIVE));
+    }
+
+    // следующий вызов с этажа из трассы ставим на его записанное время
+    private void scheduleReplay() {
+        while (replay.next(replayRecord)) {
+            if (!replayRecord.isHall()) continue;
+
+            long at = Math.max(scheduler.nanoTime(), (long) (replayRecord.timeNanos / replaySpeed));
+            scheduler.scheduleAt(at, new Pending(Kind.REPLAY, replayRecord.passenger, replayRecord.floor,
+                    replayRecord.target));
+            return;
+        }
+    }
+
+    // пересмотр назначений на модельных часах; пока есть кого ждать или кто еще придет
+    private void rebalance() {
+        dispatcher.rebalance();
+        if (generated < maxPassengers || !waiting.isEmpty()) {
+            scheduler.schedule(Config.REASSIGN_INTERVAL_MS / 1000.0, new Pending(Kind.REBALANCE));
+        }
+    }
+
+    // свободные лифты расходятся по этажам с наибольшим ожидаемым спросом
+    private void park() {
+        dispatcher.parkIdle();
+        if (generated < maxPassengers || !waiting.isEmpty()) {
+            scheduler.schedule(Config.PARKING_INTERVAL_MS / 1000.0, new Pending(Kind.PARK));
+        }
+    }
+
+    private void spawn(int passenger, int start, int target) {
+        Direction direction = (target > start) ? Direction.UP : Direction.DOWN;
+        Logger.logLine("Пассажир", "пас", passenger, "с", start, "на", target);
+
+        generated++;
+        int known = (dispatcher.getStrategy() == DispatchStrategy.DESTINATION) ? target : 0;
+        HallRequest hall = new HallRequest(start, direction, known, passenger, ++requestNumber);
+        waiting.put(hall, new Rider(passenger, start, target));
+        if (recorder != null) recorder.hall(passenger, start, direction, target);
+        submit(hall);
+    }
+
+    @Override
+    public void onBoarded(Elevator elevator, HallRequest req) {
+        Rider r = waiting.remove(req);
+        if (r == null) return;
+
+        r.hall = req;
+        if (recorder != null) recorder.car(r.passenger, elevator.id, r.target);
+        ridersByElevator.get(elevator.id).add(r);
+        // цель уже у лифта из вызова на этаже
+        if (req.targetFloor == 0) submit(new CarRequest(elevator.id, r.target, r.passenger, ++requestNumber));
+    }
+
+    @Override
+    public void onServiced(Elevator elevator, int floor) {
+        Iterator<Rider> it = ridersByElevator.get(elevator.id).iterator();
+        while (it.hasNext()) {
+            Rider r = it.next();
+            if (r.target != floor) continue;
+
+            it.remove();
+            elevator.passengerExit(r.passenger);
+            metrics.delivered(r.hall);
+            delivered++;
+
+            Logger.logLine("Доставлен", "пас", r.passenger, "лифт", elevator.id, "этаж", floor);
+        }
+    }
+
+    // гоняем события пока все не доставлены, либо пока не кончилось модельное время
+    public int run(double maxSimSeconds) {
+        Logger.useClock(scheduler);
+        try {
+            return runEvents(maxSimSeconds);
+        } finally {
+            Logger.clearClock();
+        }
+    }
+
+    private int runEvents(double maxSimSeconds) {
+        Logger.logLine("Запуск генератора");
+
+        if (!resumed) {
+            for (int i = 0; i < elevators.size(); i++) {
+                Elevator e = elevators.get(i);
+                Logger.logLine("Лифт запущен", "лифт", e.id, "этаж", e.getCurrentFloor());
+                scheduler.schedule(0.0, new Pending(Kind.ADVANCE, i, 0, 0));
+            }
+            if (replay != null) scheduleReplay();
+            else if (maxPassengers > 0) scheduleArrival();
+            if (dispatcher.isReassigning()) {
+                scheduler.schedule(Config.REASSIGN_INTERVAL_MS / 1000.0, new Pending(Kind.REBALANCE));
+            }
+            if (dispatcher.isParking()) scheduler.schedule(Config.PARKING_INTERVAL_MS / 1000.0, new Pending(Kind.PARK));
+        }
+        if (checkpointFile != null) scheduler.schedule(checkpointEvery, new Pending(Kind.CHECKPOINT));
+
+        long horizon = (long) (maxSimSeconds * 1_000_000_000L);
+        while (delivered < maxPassengers && scheduler.peekTime() <= horizon && scheduler.runNext()) {
+            if (!dispatcher.isBatching()) dispatcher.drainPending();
+        }
+
+        Logger.logLine("Симуляция завершена", "доставлено", delivered, "из", maxPassengers,
+                "события", scheduler.processedEvents());
+        return delivered;
+    }
+
+    // каждые everySec модельных секунд снимок в file поверх предыдущего; вызывать до run()
+    public void checkpointTo(Path file, double everySec) {
+        this.checkpointFile = file;
+        this.checkpointEvery = everySec;
+    }
+
+    private void periodicCheckpoint() {
+        checkpoint(checkpointFile);
+        // кроме снимков ждать нечего - дальше прогон не пойдет, не крутим их вхолостую
+        if (!scheduler.isEmpty()) scheduler.schedule(checkpointEvery, new Pending(Kind.CHECKPOINT));
+    }
+
+    // снимок всего прогона: часы, пассажиры, лифты, диспетчер, метрики и отложенные события
+    // только между событиями - из события планировщика или когда run() не идет; возвращает размер файла
+    public long checkpoint(Path file) {
+        if (checkpoint == null) checkpoint = new Checkpoint();
+
+        long t0 = System.nanoTime();
+        save(checkpoint.begin());
+        long size = checkpoint.write(file, scheduler.nanoTime());
+        Logger.logLine("Снимок записан", "байт", size, "мкс", (System.nanoTime() - t0) / 1000,
+                "кэш", checkpoint.reusedElevators());
+        return size;
+    }
+
+    private void save(SnapshotWriter out) {
+        out.putLong(scheduler.nanoTime());
+        out.putLong(scheduler.processedEvents());
+        out.putLong(seed);
+        out.putInt(maxPassengers);
+        out.putInt(generated);
+        out.putInt(delivered);
+        out.putLong(requestNumber);
+        out.putBoolean(drainScheduled);
+
+        out.putBoolean(replay != null);
+        if (replay != null) {
+            out.putLong(replay.position());
+            out.putDouble(replaySpeed);
+        }
+        arrivals.save(out);
+        out.putLong(next.passenger);
+        out.putDouble(next.time);
+        out.putInt(next.origin);
+        out.putInt(next.destination);
+
+        out.putInt(parked.size());
+        for (int index : parked) out.putInt(index);
+        // пассажир восстанавливается по своему вызову, из записи нужна только цель
+        out.putInt(waiting.size());
+        for (Map.Entry<HallRequest, Rider> e : waiting.entrySet()) {
+            out.putRef(e.getKey());
+            out.putInt(e.getValue().target);
+        }
+
+        out.putInt(elevators.size());
+        for (Elevator e : elevators) {
+            List<Rider> riders = ridersByElevator.get(e.id);
+            out.putInt(riders.size());
+            for (Rider r : riders) {
+                out.putRef(r.hall);
+                out.putInt(r.target);
+            }
+            checkpoint.elevator(e);
+        }
+        dispatcher.save(out);
+        metrics.save(out);
+
+        out.putInt(scheduler.pending());
+        scheduler.forEachPending((at, action) -> {
+            if (!(action instanceof Pending)) throw new IllegalStateException("Событие нельзя сохранить: " + action);
+            Pending p = (Pending) action;
+            out.putLong(at);
+            out.putByte(p.kind.ordinal());
+            out.putInt(p.a);
+            out.putInt(p.b);
+            out.putInt(p.c);
+        });
+    }
+
+    // продолжить прогон из снимка; вызывать до run() на симуляции того же здания и с той же нагрузкой,
+    // если снимали проигрывание трассы - после replayFrom с той же трассой
+    public void restore(Path file) {
+        SnapshotReader in = Checkpoint.read(file);
+        scheduler.restore(in.getLong(), in.getLong());
+        seed = in.getLong();
+        maxPassengers = in.getInt();
+        generated = in.getInt();
+        delivered = in.getInt();
+        requestNumber = in.getLong();
+        drainScheduled = in.getBoolean();
+
+        if (in.getBoolean()) {
+            long position = in.getLong();
+            double speed = in.getDouble();
+            if (replay == null) throw new IllegalStateException("Снимок снят при проигрывании трассы, нужна та же трасса");
+            replay.seek(position);
+            replaySpeed = speed;
+        }
+        arrivals.restore(in);
+        next.passenger = in.getLong();
+        next.time = in.getDouble();
+        next.origin = in.getInt();
+        next.destination = in.getInt();
+
+        parked.clear();
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) parked.add(in.getInt());
+        waiting.clear();
+        n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            HallRequest hall = in.getRef();
+            waiting.put(hall, new Rider(hall.passenger, hall.floor, in.getInt()));
+        }
+
+        n = in.getInt();
+        if (n != elevators.size()) throw new IllegalStateException("Снимок на " + n + " лифтов, а их " + elevators.size());
+        for (Elevator e : elevators) {
+            List<Rider> riders = ridersByElevator.get(e.id);
+            riders.clear();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                HallRequest hall = in.getRef();
+                Rider r = new Rider(hall.passenger, hall.floor, in.getInt());
+                r.hall = hall;
+                riders.add(r);
+            }
+            e.restore(in);
+        }
+        dispatcher.restore(in);
+        metrics.restore(in);
+
+        // свои периодические снимки продолженный прогон заводит сам, если их попросили
+        n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            long at = in.getLong();
+            Kind kind = Kind.values()[in.getByte()];
+            Pending p = new Pending(kind, in.getInt(), in.getInt(), in.getInt());
+            if (kind != Kind.CHECKPOINT) scheduler.scheduleAt(at, p);
+        }
+
+        resumed = true;
+        Logger.logLine("Прогон продолжен из снимка", "время", in.timeNanos() / 1e9, "доставлено", delivered,
+                "из", maxPassengers);
+    }
+
+    public static EventDrivenSimulation createDefault(long seed, int passengers) {
+        return create(SimConfig.fromProperty(), seed, passengers);
+    }
+
+    // у прогона свои часы и метрики, общий SimMetrics.global() он не трогает
+    // так прогоны MonteCarloRunner идут параллельно и не пишут статистику друг другу
+    public static EventDrivenSimulation create(SimConfig config, long seed, int passengers) {
+        EventScheduler scheduler = new EventScheduler();
+        SimConfig run = config.withMetrics(new SimMetrics(scheduler));
+        return new EventDrivenSimulation(Elevator.fleet(run), run, passengers, seed, scheduler, run.metrics());
+    }
+
+    public int delivered() {
+        return delivered;
+    }
+
+    public double simulatedSeconds() {
+        return scheduler.nanoTime() / 1e9;
+    }
+
+    public int runToCompletion() {
+        return run(Double.MAX_VALUE / 2e9);
+    }
+
+    public static int runDefault(long seed, int passengers) {
+        return createDefault(seed, passengers).runToCompletion();
+    }
+}
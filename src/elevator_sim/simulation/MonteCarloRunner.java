@@ -0,0 +1,173 @@
+package elevator_sim.simulation;
+
+import elevator_sim.SimConfig;
+import elevator_sim.metrics.Histogram;
+import elevator_sim.metrics.SimMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToDoubleFunction;
+
+// много независимых событийных прогонов параллельно на ForkJoinPool
+// у каждого прогона свой seed, свой SimConfig, свои часы и метрики - общего изменяемого состояния нет,
+// поэтому результат зависит только от seed, а не от того, сколько ядер и как их поделили
+public final class MonteCarloRunner {
+
+    // итог одного прогона, времена в модельных секундах
+    public static final class RunResult {
+        public final long seed;
+        public final int delivered;
+        public final double simSeconds;
+        public final double waitMean;
+        public final double waitP95;
+        public final double rideMean;
+        public final double rideP95;
+        // доставлено пассажиров за модельный час
+        public final double throughput;
+
+        RunResult(long seed, int delivered, double simSeconds, SimMetrics m) {
+            this.seed = seed;
+            this.delivered = delivered;
+            this.simSeconds = simSeconds;
+            this.waitMean = m.hallWait.mean() / 1e9;
+            this.waitP95 = m.getHallWaitP95Seconds();
+            this.rideMean = m.ride.mean() / 1e9;
+            this.rideP95 = m.getRideP95Seconds();
+            this.throughput = (simSeconds > 0) ? delivered * 3600.0 / simSeconds : 0.0;
+        }
+    }
+
+    // среднее по прогонам и 95% доверительный интервал для него
+    public static final class Estimate {
+        public final double mean;
+        public final double stddev;
+        public final double low;
+        public final double high;
+
+        Estimate(double mean, double stddev, double low, double high) {
+            this.mean = mean;
+            this.stddev = stddev;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    private final SimConfig config;
+    private final int passengers;
+    private final int runs;
+    private final long baseSeed;
+    private final ForkJoinPool pool;
+
+    // ожидания и поездки всех пассажиров всех прогонов одним распределением
+    public final Histogram allWaits = new Histogram();
+    public final Histogram allRides = new Histogram();
+
+    public MonteCarloRunner(SimConfig config, int passengers, int runs, long baseSeed, int parallelism) {
+        this.config = config;
+        this.passengers = passengers;
+        this.runs = runs;
+        this.baseSeed = baseSeed;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // прогон i получает seed baseSeed + i, результаты в порядке seed
+    public List<RunResult> run() {
+        try {
+            return pool.invoke(new Batch(0, runs));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private RunResult runOne(long seed) {
+        EventDrivenSimulation sim = EventDrivenSimulation.create(config, seed, passengers);
+        int delivered = sim.runToCompletion();
+
+        SimMetrics m = sim.metrics();
+        allWaits.add(m.hallWait);
+        allRides.add(m.ride);
+        return new RunResult(seed, delivered, sim.simulatedSeconds(), m);
+    }
+
+    // делим диапазон seed пополам, пока не останется один прогон
+    private final class Batch extends RecursiveTask<List<RunResult>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<RunResult> compute() {
+            if (to - from <= 1) {
+                List<RunResult> one = new ArrayList<>(1);
+                if (to > from) one.add(runOne(baseSeed + from));
+                return one;
+            }
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid);
+            left.fork();
+            List<RunResult> right = new Batch(mid, to).compute();
+
+            List<RunResult> all = new ArrayList<>(left.join());
+            all.addAll(right);
+            return all;
+        }
+    }
+
+    public static Estimate estimate(List<RunResult> results, ToDoubleFunction<RunResult> f) {
+        int n = results.size();
+        if (n == 0) return new Estimate(0, 0, 0, 0);
+
+        double sum = 0;
+        for (RunResult r : results) sum += f.applyAsDouble(r);
+        double mean = sum / n;
+        if (n == 1) return new Estimate(mean, 0, mean, mean);
+
+        double sq = 0;
+        for (RunResult r : results) {
+            double d = f.applyAsDouble(r) - mean;
+            sq += d * d;
+        }
+        double sd = Math.sqrt(sq / (n - 1));
+        double half = studentT95(n - 1) * sd / Math.sqrt(n);
+        return new Estimate(mean, sd, mean - half, mean + half);
+    }
+
+    // квантиль 0.975 распределения Стьюдента: разложение Корниша-Фишера вокруг нормального 1.96
+    // при 5 степенях свободы ошибка меньше 1%, дальше быстро уходит в ноль
+    static double studentT95(int df) {
+        double z = 1.959964;
+        double z3 = z * z * z;
+        double z5 = z3 * z * z;
+        return z + (z3 + z) / (4.0 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * df * df);
+    }
+
+    public String summary(List<RunResult> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Прогонов %d, пассажиров в прогоне %d, %s%n", results.size(), passengers, config));
+        line(sb, "Ожидание ср, с", estimate(results, r -> r.waitMean));
+        line(sb, "Ожидание p95, с", estimate(results, r -> r.waitP95));
+        line(sb, "Поездка ср, с", estimate(results, r -> r.rideMean));
+        line(sb, "Поездка p95, с", estimate(results, r -> r.rideP95));
+        line(sb, "Пассажиров/час", estimate(results, r -> r.throughput));
+        sb.append(String.format("Все ожидания, с  | n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f%n", allWaits.count(),
+                allWaits.percentile(50) / 1e9, allWaits.percentile(95) / 1e9,
+                allWaits.percentile(99) / 1e9, allWaits.max() / 1e9));
+        sb.append(String.format("Все поездки, с   | n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f%n", allRides.count(),
+                allRides.percentile(50) / 1e9, allRides.percentile(95) / 1e9,
+                allRides.percentile(99) / 1e9, allRides.max() / 1e9));
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String name, Estimate e) {
+        sb.append(String.format("%-16s | %.2f ± %.2f (95%% ДИ %.2f..%.2f, σ=%.2f)%n",
+                name, e.mean, (e.high - e.low) / 2, e.low, e.high, e.stddev));
+    }
+}
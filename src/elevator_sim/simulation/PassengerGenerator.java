@@ -1,24 +1,46 @@
 package elevator_sim.simulation;
 
-import elevator_sim.Config;
-import elevator_sim.dispatcher.Dispatcher;
+import elevator_sim.SimConfig;
+import elevator_sim.dispatcher.DispatchStrategy;
+import elevator_sim.dispatcher.RequestDispatcher;
+import elevator_sim.engine.SimClock;
+import elevator_sim.metrics.SimMetrics;
 import elevator_sim.models.*;
+import elevator_sim.trace.TraceReader;
+import elevator_sim.trace.TraceRecord;
+import elevator_sim.trace.TraceWriter;
 import elevator_sim.utils.Logger;
+import elevator_sim.workload.Arrival;
+import elevator_sim.workload.ArrivalStream;
+import elevator_sim.workload.Workload;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 public final class PassengerGenerator extends Thread {
 
-    private final Dispatcher dispatcher;
+    private final RequestDispatcher dispatcher;
     private final Map<Integer, Elevator> elevators;
 
-    private final int floors;
     private final int maxPassengers;
+    // откуда, куда и когда приходят пассажиры (-Dworkload), -Dworkload.seed повторяет прогон
+    private Workload workload;
+    private final long seed = Long.getLong("workload.seed", System.nanoTime());
 
-    public PassengerGenerator(Dispatcher dispatcher, List<Elevator> elevators, int floors, int maxPassengers) {
+    // запись потока заявок в трассу и проигрывание готовой трассы вместо случайных пассажиров
+    private TraceWriter recorder;
+    private TraceReader replay;
+    private double replaySpeed = 1.0;
+
+    public PassengerGenerator(RequestDispatcher dispatcher, List<Elevator> elevators, int floors, int maxPassengers) {
+        this(dispatcher, elevators, SimConfig.defaults().withFloors(floors), maxPassengers);
+    }
+
+    public PassengerGenerator(RequestDispatcher dispatcher, List<Elevator> elevators, SimConfig config, int maxPassengers) {
         super("Генератор");
         setDaemon(true);
 
@@ -28,29 +50,43 @@ public final class PassengerGenerator extends Thread {
         for (Elevator e : elevators) {
             this.elevators.put(e.id, e);
         }
-        this.floors = floors;
+        this.workload = Workload.fromProperty(config);
         this.maxPassengers = maxPassengers;
     }
 
-    private void journey(String passengerId) {
-        String pid = passengerId.substring(0, 4);
+    public void useWorkload(Workload workload) {
+        this.workload = workload;
+    }
+
+    public void recordTo(TraceWriter recorder) {
+        this.recorder = recorder;
+    }
 
-        int start = ThreadLocalRandom.current().nextInt(1, floors + 1);
-        int target = ThreadLocalRandom.current().nextInt(1, floors + 1);
-        while (target == start) target = ThreadLocalRandom.current().nextInt(1, floors + 1);
+    // speed > 1 - трасса проигрывается быстрее записанной
+    public void replayFrom(TraceReader replay, double speed) {
+        this.replay = replay;
+        this.replaySpeed = speed;
+    }
 
+    private void journey(int passenger, int start, int target) {
         Direction direction = (target > start) ? Direction.UP : Direction.DOWN;
 
-        Logger.logLine("Пассажир", "пас", pid, "с", start, "на", target);
+        Logger.logLine("Пассажир", "пас", passenger, "с", start, "на", target);
+
+        // при вызове по назначению цель набирают еще на этаже
+        boolean destination = dispatcher.getStrategy() == DispatchStrategy.DESTINATION;
 
-        int hallNumber = RequestNumber.next();
-        HallRequest hall = new HallRequest(start, direction, passengerId, hallNumber);
+        // пассажир ждет в своем потоке - ему нужны сигналы назначения и посадки
+        RideSignals signals = new RideSignals();
+        HallRequest hall = new HallRequest(start, direction, destination ? target : 0, passenger,
+                RequestNumber.next(), signals);
+        if (recorder != null) recorder.hall(passenger, start, direction, target);
         dispatcher.submitRequest(hall);
 
         //ждём назначения лифта
         try {
-            if (!hall.assignedEvent.await(30, TimeUnit.SECONDS)) {
-                Logger.logLine("Таймаут назначения", "пас", pid);
+            if (!signals.assigned.await(30, TimeUnit.SECONDS) && giveUp(hall)) {
+                Logger.warnLine("Таймаут назначения", "пас", passenger);
                 return;
             }
         } catch (InterruptedException ignored) {
@@ -58,43 +94,68 @@ public final class PassengerGenerator extends Thread {
             return;
         }
 
-        Integer assignedId = hall.assignedElevatorId;
-        Elevator elev = (assignedId == null) ? null : elevators.get(assignedId);
+        Elevator elev = elevators.get(hall.assignedElevatorId);
 
         if (elev == null) {
-            Logger.logLine("Ошибка", "пас", pid, "msg", "Нет назначенного лифта");
+            Logger.errorLine("Ошибка", "пас", passenger, "msg", "Нет назначенного лифта");
             return;
         }
 
         // ждём посадки лифт должен открыть двери на этаже
         try {
-            if (!hall.pickedUp.await(60, TimeUnit.SECONDS)) {
-                Logger.logLine("Таймаут посадки", "пас", pid, "лифт", elev.id);
-                return;
+            if (!signals.pickedUp.await(60, TimeUnit.SECONDS)) {
+                if (giveUp(hall)) {
+                    Logger.warnLine("Таймаут посадки", "пас", passenger, "лифт", elev.id);
+                    return;
+                }
+                // лифт как раз сажает - сигнал придет в том же открытии дверей
+                signals.pickedUp.await();
             }
         } catch (InterruptedException ignored) {
             Thread.currentThread().interrupt();
             return;
         }
 
+        // пока ждали, вызов могли отдать другому лифту - едем в том, который приехал
+        Elevator boarded = elevators.get(hall.assignedElevatorId);
+        if (boarded != null) elev = boarded;
+
+        // ожидание прибытия заводим до кнопки в кабине, иначе лифт может открыть двери раньше, чем мы начнем ждать
+        // с известной заранее целью его уже завел лифт при посадке
+        if (!destination) elev.expectArrival(target, signals);
 
-        int carNumber = RequestNumber.next();
-        CarRequest car = new CarRequest(elev.id, target, passengerId, carNumber);
-        dispatcher.submitRequest(car);
+        if (recorder != null) recorder.car(passenger, elev.id, target);
+        if (!destination) dispatcher.submitRequest(new CarRequest(elev.id, target, passenger, RequestNumber.next()));
+
+        // ждём прибытие, виртуальный поток на это время отпускает носитель
+        boolean arrived;
+        try {
+            arrived = signals.arrived.await(90, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
 
-        // ждём прибытие
-        if (elev.waitForArrival(target, 90_000)) {
-            elev.passengerExit(passengerId);
-            car.delivered.countDown();
+        if (arrived) {
+            elev.passengerExit(passenger);
+            SimMetrics.global().delivered(hall);
 
-            Logger.logLine("Доставлен", "пас", pid, "лифт", elev.id, "этаж", target);
+            Logger.logLine("Доставлен", "пас", passenger, "лифт", elev.id, "этаж", target);
         } else {
-            Logger.logLine("Таймаут доставки", "пас", pid, "лифт", elev.id);
+            // пассажир выходит где придется, иначе так и числился бы в кабине
+            elev.passengerExit(passenger);
+            Logger.warnLine("Таймаут доставки", "пас", passenger, "лифт", elev.id);
         }
     }
 
-    private static double rand(double a, double b) {
-        return a + (b - a) * ThreadLocalRandom.current().nextDouble();
+    // пассажир уходит с этажа: лифт его не посадит, а вызов, за которым никого не осталось, снимет с маршрута
+    // false - лифт уже начал его сажать, уходить поздно
+    private boolean giveUp(HallRequest hall) {
+        if (!hall.abandon()) return false;
+
+        Elevator e = elevators.get(hall.assignedElevatorId);
+        if (e != null) e.dropAbandoned(hall.floor);
+        return true;
     }
 
     private static void sleepMs(long ms) {
@@ -110,42 +171,70 @@ public final class PassengerGenerator extends Thread {
         Logger.logLine("Запуск генератора");
         sleepMs(1000);
 
-        List<Thread> threads = new ArrayList<>();
+        // открытая нагрузка: пассажиры приходят по своему расписанию и не ждут, пока система освободится
+        // каждая поездка на виртуальном потоке, ожидание лифта не держит поток ОС
+        ThreadFactory factory = Thread.ofVirtual().name("Пассажир-", 1).factory();
+        ExecutorService journeys = Executors.newThreadPerTaskExecutor(factory);
 
-        for (int i = 0; i < maxPassengers; i++) {
-            String pid = UUID.randomUUID().toString();
+        if (replay != null) replay(journeys);
+        else generate(journeys);
 
-            Thread t = new Thread(() -> journey(pid), "Пассажир-" + pid.substring(0, 4));
-            t.setDaemon(true);
-            t.start();
+        journeys.shutdown();
+        try {
+            // самая долгая поездка укладывается в таймауты journey: 30 + 60 + 90 секунд
+            journeys.awaitTermination(180, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
 
-            threads.add(t);
+        Logger.logLine("Симуляция завершена");
+    }
 
-            //ограничиваем количество активных пассажиров
-            while (threads.stream().filter(Thread::isAlive).count() >= Config.MAX_ACTIVE_PASSENGERS) {
-                sleepMs(200);
-            }
+    private void generate(ExecutorService journeys) {
+        long startNs = System.nanoTime();
+        ArrivalStream arrivals = workload.stream(seed);
+        Arrival next = new Arrival();
+        Logger.logLine("Нагрузка", "msg", workload.toString());
 
-            sleepMs((long) (rand(0.2, 0.8) * 1000));
+        for (int i = 0; i < maxPassengers; i++) {
+            arrivals.next(next);
+            // время прихода считаем от старта, а не от предыдущего sleep - задержки не снижают интенсивность
+            long waitMs = (startNs + SimClock.toNanos(next.time) - System.nanoTime()) / 1_000_000;
+            if (waitMs > 0) sleepMs(waitMs);
+
+            int passenger = i;
+            int start = next.origin;
+            int target = next.destination;
+            journeys.execute(() -> journey(passenger, start, target));
         }
+    }
 
-        for (Thread t : threads) {
-            try {
-                t.join(5000);
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    // из трассы берем только вызовы с этажа: кнопку в кабине пассажир нажмет сам, когда сядет,
+    // ведь лифт при другом диспетчере может оказаться другим
+    private void replay(ExecutorService journeys) {
+        long startNs = System.nanoTime();
+        TraceRecord rec = new TraceRecord();
 
-        Logger.logLine("Симуляция завершена");
+        Logger.logLine("Проигрывание трассы", "записи", replay.records());
+        while (replay.next(rec)) {
+            if (!rec.isHall()) continue;
+
+            long waitMs = (startNs + (long) (rec.timeNanos / replaySpeed) - System.nanoTime()) / 1_000_000;
+            if (waitMs > 0) sleepMs(waitMs);
+
+            int passenger = rec.passenger;
+            int start = rec.floor;
+            int target = rec.target;
+            journeys.execute(() -> journey(passenger, start, target));
+        }
     }
 
     //потокобезопасный счетчик номера заявки 
     private static final class RequestNumber {
-        private static final java.util.concurrent.atomic.AtomicInteger COUNTER =
-                new java.util.concurrent.atomic.AtomicInteger(0);
+        private static final java.util.concurrent.atomic.AtomicLong COUNTER =
+                new java.util.concurrent.atomic.AtomicLong(0);
 
-        static int next() {
+        static long next() {
             return COUNTER.incrementAndGet();
         }
     }
@@ -0,0 +1,69 @@
+package elevator_sim.simulation;
+
+import elevator_sim.SimConfig;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+// прогоняет событийную симуляцию на все больших зданиях и меряет сам движок:
+// событий и решений диспетчера в секунду реального времени, пик кучи и время GC на каждом шаге
+public final class ScalingHarness {
+
+    // этажей x лифтов, от демо-здания до большого комплекса
+    private static final int[][] STEPS = {
+            {16, 4}, {32, 8}, {64, 16}, {100, 32}, {200, 64}, {300, 128}
+    };
+
+    private final SimConfig base;
+    private final int passengersPerCar;
+
+    public ScalingHarness(SimConfig base, int passengersPerCar) {
+        this.base = base;
+        this.passengersPerCar = passengersPerCar;
+    }
+
+    public void run(PrintStream out) {
+        // нагрузка на один лифт как в базовой конфигурации, иначе большие здания просто простаивают
+        double ratePerCar = base.arrivalRate / base.elevators;
+
+        out.printf("%8s %6s %9s %10s %12s %12s %10s %9s %8s%n",
+                "этажей", "лифтов", "пассаж.", "событий", "событий/с", "решений/с", "пик кучи", "GC, мс", "сек");
+        for (int[] step : STEPS) {
+            SimConfig cfg = base.withFloors(step[0]).withElevators(step[1]).withArrivalRate(ratePerCar * step[1]);
+            runStep(cfg, passengersPerCar * step[1], out);
+        }
+    }
+
+    private void runStep(SimConfig cfg, int passengers, PrintStream out) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+        long gcBefore = gcMillis();
+
+        EventDrivenSimulation sim = EventDrivenSimulation.create(cfg, 1L, passengers);
+        long t0 = System.nanoTime();
+        int delivered = sim.runToCompletion();
+        double wall = (System.nanoTime() - t0) / 1e9;
+
+        long events = sim.scheduler().processedEvents();
+        long decisions = sim.metrics().decision.count();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) peak += pool.getPeakUsage().getUsed();
+        }
+
+        out.printf("%8d %6d %9s %10d %12.0f %12.0f %8d МБ %9d %8.2f%n",
+                cfg.floors, cfg.elevators, delivered + "/" + passengers, events,
+                events / wall, decisions / wall, peak >> 20, gcMillis() - gcBefore, wall);
+    }
+
+    private static long gcMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += Math.max(0, gc.getCollectionTime());
+        }
+        return ms;
+    }
+}
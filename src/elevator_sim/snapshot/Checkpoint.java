@@ -0,0 +1,161 @@
+package elevator_sim.snapshot;
+
+import elevator_sim.models.Elevator;
+import elevator_sim.models.HallRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// файл снимка: заголовок, таблица заявок (сначала поля всех заявок, потом их связи), тело
+// пишется во временный файл рядом и переименовывается поверх, поэтому упавшая посреди записи JVM
+// оставляет предыдущий снимок целым; force не зовем - от падения JVM файл и так переживет, а ждать диск долго
+// один экземпляр на симуляцию: буферы и закодированные блоки лифтов живут между снимками
+public final class Checkpoint {
+    static final int MAGIC = 0x454C434B; // "ELCK"
+    static final int VERSION = 2;
+    // magic, version, модельное время, длина таблицы, длина тела, crc32c, запас
+    static final int HEADER = 32;
+
+    // лифт в том виде, в каком его записали, и версия его состояния на тот момент
+    private static final class Block {
+        final long version;
+        final byte[] bytes;
+        final HallRequest[] refs;
+
+        Block(long version, byte[] bytes, HallRequest[] refs) {
+            this.version = version;
+            this.bytes = bytes;
+            this.refs = refs;
+        }
+    }
+
+    private final SnapshotWriter body = new SnapshotWriter(64 * 1024);
+    private final SnapshotWriter table = body.sharing(16 * 1024);
+    private final SnapshotWriter links = body.sharing(4 * 1024);
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    private final Map<Integer, Block> blocks = new HashMap<>();
+    private final CRC32C crc = new CRC32C();
+    private int reused;
+
+    // начать новый снимок, тело пишется в возвращенный писатель
+    public SnapshotWriter begin() {
+        body.reset();
+        table.rewind();
+        links.rewind();
+        reused = 0;
+        return body;
+    }
+
+    // снимок инкрементальный по лифтам: если с прошлого раза planVersion не сдвинулся, лифт не менялся
+    // и его блок копируется готовым; в большом парке большая часть кабин стоит, кодировать их заново незачем
+    public void elevator(Elevator e) {
+        Block b = blocks.get(e.id);
+        if (b != null && b.version == e.planVersion()) {
+            body.putBytes(b.bytes);
+            for (HallRequest r : b.refs) body.register(r);
+            reused++;
+            return;
+        }
+
+        int from = body.position();
+        body.beginCapture();
+        long version = e.save(body);
+        HallRequest[] refs = body.endCapture();
+        blocks.put(e.id, new Block(version, body.copy(from), refs));
+    }
+
+    // сколько лифтов последний снимок взял из кэша
+    public int reusedElevators() {
+        return reused;
+    }
+
+    // дописывает таблицу заявок и сохраняет снимок в file; возвращает размер файла
+    public long write(Path file, long timeNanos) {
+        // связи заявок могут сослаться на новые заявки, список растет, пока не замкнется
+        List<HallRequest> requests = body.requests();
+        for (int i = 0; i < requests.size(); i++) requests.get(i).saveLinks(links);
+        table.putInt(requests.size());
+        for (HallRequest r : requests) r.saveFields(table);
+
+        ByteBuffer t = table.written();
+        ByteBuffer l = links.written();
+        ByteBuffer b = body.written();
+        crc.reset();
+        crc.update(t.duplicate());
+        crc.update(l.duplicate());
+        crc.update(b.duplicate());
+
+        header.clear();
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(timeNanos);
+        header.putInt(t.remaining() + l.remaining());
+        header.putInt(b.remaining());
+        header.putInt((int) crc.getValue());
+        header.putInt(0);
+        header.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer[] parts = {header, t, l, b};
+        long size = HEADER + t.remaining() + l.remaining() + b.remaining();
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long left = size;
+                while (left > 0) left -= ch.write(parts);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return size;
+    }
+
+    // проверяет файл, восстанавливает таблицу заявок и отдает читателя, стоящего на начале тела
+    public static SnapshotReader read(Path file) {
+        ByteBuffer all;
+        try {
+            all = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (all.remaining() < HEADER || all.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Не файл снимка: " + file);
+        }
+        int version = all.getInt();
+        if (version != VERSION) throw new IllegalArgumentException("Версия снимка " + version);
+        long timeNanos = all.getLong();
+        int tableLength = all.getInt();
+        int bodyLength = all.getInt();
+        int expected = all.getInt();
+
+        if (all.capacity() != HEADER + (long) tableLength + bodyLength) {
+            throw new IllegalArgumentException("Снимок обрезан: " + file);
+        }
+        CRC32C check = new CRC32C();
+        check.update(all.duplicate().position(HEADER));
+        if ((int) check.getValue() != expected) throw new IllegalArgumentException("Снимок поврежден: " + file);
+
+        SnapshotReader in = new SnapshotReader(all.position(HEADER), timeNanos);
+        int n = in.getInt();
+        HallRequest[] requests = new HallRequest[n];
+        for (int i = 0; i < n; i++) {
+            requests[i] = HallRequest.restore(in);
+            in.define(requests[i]);
+        }
+        for (HallRequest r : requests) r.restoreLinks(in);
+        return in;
+    }
+}
@@ -0,0 +1,65 @@
+package elevator_sim.snapshot;
+
+import elevator_sim.models.FloorSet;
+import elevator_sim.models.HallRequest;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+// читает тело снимка в том же порядке, в каком его писал SnapshotWriter
+// вызовы с этажа по номеру берутся из таблицы заявок, уже восстановленной Checkpoint.read
+public final class SnapshotReader {
+    private final ByteBuffer buf;
+    private final Map<Long, HallRequest> requests = new HashMap<>();
+    private final long timeNanos;
+
+    SnapshotReader(ByteBuffer buf, long timeNanos) {
+        this.buf = buf;
+        this.timeNanos = timeNanos;
+    }
+
+    // модельное время, на котором снят снимок
+    public long timeNanos() {
+        return timeNanos;
+    }
+
+    public int getByte() {
+        return buf.get();
+    }
+
+    public boolean getBoolean() {
+        return buf.get() != 0;
+    }
+
+    public int getInt() {
+        return buf.getInt();
+    }
+
+    public long getLong() {
+        return buf.getLong();
+    }
+
+    public double getDouble() {
+        return buf.getDouble();
+    }
+
+    public void getFloors(FloorSet into) {
+        into.clear();
+        int n = buf.getInt();
+        for (int i = 0; i < n; i++) into.add(buf.getInt());
+    }
+
+    public HallRequest getRef() {
+        long number = buf.getLong();
+        if (number < 0) return null;
+
+        HallRequest r = requests.get(number);
+        if (r == null) throw new IllegalStateException("В снимке нет заявки " + number);
+        return r;
+    }
+
+    void define(HallRequest r) {
+        requests.put(r.номер, r);
+    }
+}
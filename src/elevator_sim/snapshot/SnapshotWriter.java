@@ -0,0 +1,138 @@
+package elevator_sim.snapshot;
+
+import elevator_sim.models.FloorSet;
+import elevator_sim.models.HallRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// тело снимка: примитивы подряд в little-endian буфер, буфер растет сам и переиспользуется между снимками
+// на вызов с этажа пишется только номер, сами вызовы один раз уходят в таблицу заявок (Checkpoint)
+public final class SnapshotWriter {
+    private ByteBuffer buf;
+    // на какие заявки сослались, в порядке первой ссылки; общие у тела и таблицы
+    private final List<HallRequest> requests;
+    private final Set<Long> numbers;
+    // ссылки текущего куска, чтобы кэш блока лифта мог повторить их без перекодирования
+    private List<HallRequest> captured;
+
+    public SnapshotWriter(int capacity) {
+        this(capacity, new ArrayList<>(), new HashSet<>());
+    }
+
+    private SnapshotWriter(int capacity, List<HallRequest> requests, Set<Long> numbers) {
+        this.buf = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        this.requests = requests;
+        this.numbers = numbers;
+    }
+
+    // писатель таблицы заявок: ссылки из таблицы дополняют тот же список
+    SnapshotWriter sharing(int capacity) {
+        return new SnapshotWriter(capacity, requests, numbers);
+    }
+
+    // новый снимок: пустой буфер и пустая таблица заявок
+    void reset() {
+        rewind();
+        requests.clear();
+        numbers.clear();
+    }
+
+    // только буфер, таблицу заявок писатель делит с другими
+    void rewind() {
+        buf.clear();
+        captured = null;
+    }
+
+    private void ensure(int bytes) {
+        if (buf.remaining() >= bytes) return;
+        int size = Math.max(buf.capacity() * 2, buf.position() + bytes);
+        ByteBuffer bigger = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+
+    public void putByte(int v) {
+        ensure(1);
+        buf.put((byte) v);
+    }
+
+    public void putBoolean(boolean v) {
+        putByte(v ? 1 : 0);
+    }
+
+    public void putInt(int v) {
+        ensure(4);
+        buf.putInt(v);
+    }
+
+    public void putLong(long v) {
+        ensure(8);
+        buf.putLong(v);
+    }
+
+    public void putDouble(double v) {
+        ensure(8);
+        buf.putDouble(v);
+    }
+
+    // этажи по возрастанию: число и номера, для маршрутов в пару этажей это короче слов маски
+    public void putFloors(FloorSet floors) {
+        putInt(floors.size());
+        for (int f = floors.nextSetBit(0); f >= 0; f = floors.nextSetBit(f + 1)) putInt(f);
+    }
+
+    // номер заявки или -1
+    public void putRef(HallRequest r) {
+        if (r == null) {
+            putLong(-1L);
+            return;
+        }
+        putLong(r.номер);
+        register(r);
+    }
+
+    void register(HallRequest r) {
+        if (numbers.add(r.номер)) requests.add(r);
+        if (captured != null) captured.add(r);
+    }
+
+    void putBytes(byte[] bytes) {
+        ensure(bytes.length);
+        buf.put(bytes);
+    }
+
+    int position() {
+        return buf.position();
+    }
+
+    byte[] copy(int from) {
+        byte[] bytes = new byte[buf.position() - from];
+        buf.get(from, bytes);
+        return bytes;
+    }
+
+    void beginCapture() {
+        captured = new ArrayList<>();
+    }
+
+    HallRequest[] endCapture() {
+        HallRequest[] refs = captured.toArray(new HallRequest[0]);
+        captured = null;
+        return refs;
+    }
+
+    List<HallRequest> requests() {
+        return requests;
+    }
+
+    // записанное как буфер только для чтения, сам писатель не сдвигается
+    ByteBuffer written() {
+        return buf.duplicate().flip();
+    }
+}
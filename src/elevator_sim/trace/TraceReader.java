@@ -0,0 +1,101 @@
+package elevator_sim.trace;
+
+import elevator_sim.models.Direction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// читает трассу TraceWriter последовательно через отображение в память окнами
+public final class TraceReader implements AutoCloseable {
+    // окно меньше 2 ГБ (предел одного MappedByteBuffer) и кратно записи
+    private static final long WINDOW = TraceWriter.RECORD * (1L << 24);
+
+    private final FileChannel ch;
+    private final long records;
+    private final long halls;
+
+    private MappedByteBuffer buf;
+    private long windowStart;
+    private long read;
+
+    public TraceReader(Path path) {
+        try {
+            ch = FileChannel.open(path, StandardOpenOption.READ);
+            MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, TraceWriter.HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != TraceWriter.MAGIC) throw new IllegalArgumentException("Не файл трассы: " + path);
+            int version = header.getInt();
+            if (version != TraceWriter.VERSION) throw new IllegalArgumentException("Версия трассы " + version);
+            records = header.getLong();
+            halls = header.getLong();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rewind();
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public long hallCalls() {
+        return halls;
+    }
+
+    public void rewind() {
+        seek(0);
+    }
+
+    // сколько записей уже прочитано
+    public long position() {
+        return read;
+    }
+
+    // продолжить с записи record, например после восстановления из снимка
+    public void seek(long record) {
+        read = Math.min(Math.max(0, record), records);
+        windowStart = TraceWriter.HEADER + read * TraceWriter.RECORD;
+        buf = null;
+    }
+
+    public boolean next(TraceRecord into) {
+        if (read >= records) return false;
+        try {
+            if (buf == null || !buf.hasRemaining()) {
+                if (buf != null) windowStart += buf.capacity();
+                long size = Math.min(WINDOW, (records - read) * TraceWriter.RECORD);
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        into.timeNanos = buf.getLong();
+        into.passenger = buf.getInt();
+        into.floor = buf.getShort();
+        into.target = buf.getShort();
+        into.elevatorId = buf.getShort();
+        into.kind = buf.get();
+        byte dir = buf.get();
+        into.direction = (dir > 0) ? Direction.UP : (dir < 0) ? Direction.DOWN : Direction.IDLE;
+
+        read++;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        buf = null;
+        try {
+            ch.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
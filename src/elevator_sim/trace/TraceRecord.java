@@ -0,0 +1,26 @@
+package elevator_sim.trace;
+
+import elevator_sim.models.Direction;
+
+// одна запись трассы; читатель переиспользует один объект, как ElevatorState у диспетчера
+public final class TraceRecord {
+    public static final byte HALL = 0;
+    public static final byte CAR = 1;
+
+    public byte kind;
+    // наносекунды от начала записи по часам симуляции
+    public long timeNanos;
+    // порядковый номер пассажира в трассе, связывает вызов с этажа и кнопку в кабине
+    public int passenger;
+    // этаж вызова (HALL) или 0 (CAR)
+    public int floor;
+    public Direction direction = Direction.IDLE;
+    // куда едет пассажир
+    public int target;
+    // лифт, в котором нажали кнопку (CAR), иначе 0
+    public int elevatorId;
+
+    public boolean isHall() {
+        return kind == HALL;
+    }
+}
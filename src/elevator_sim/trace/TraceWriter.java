@@ -0,0 +1,115 @@
+package elevator_sim.trace;
+
+import elevator_sim.engine.SimClock;
+import elevator_sim.models.Direction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// двоичная трасса заявок: заголовок + записи фиксированной длины по 20 байт
+// файл пишется через отображение в память кусками, поэтому миллионы записей не идут через write()
+public final class TraceWriter implements AutoCloseable {
+    static final int MAGIC = 0x454C5452; // "ELTR"
+    static final int VERSION = 1;
+    // magic, version, записей, вызовов с этажа, запас
+    static final int HEADER = 32;
+    // time(8) passenger(4) floor(2) target(2) elevator(2) kind(1) dir(1)
+    static final int RECORD = 20;
+    private static final long CHUNK = RECORD * 65_536L;
+
+    private final FileChannel ch;
+    private final SimClock clock;
+    private final long t0;
+
+    private MappedByteBuffer buf;
+    private long mapStart;
+    private long records;
+    private long halls;
+    private boolean closed;
+
+    public TraceWriter(Path path, SimClock clock) {
+        this.clock = clock;
+        try {
+            ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapStart = HEADER;
+            remap();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        t0 = clock.nanoTime();
+    }
+
+    private void remap() throws IOException {
+        buf = ch.map(FileChannel.MapMode.READ_WRITE, mapStart, CHUNK);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void hall(int passenger, int floor, Direction direction, int target) {
+        append(TraceRecord.HALL, passenger, floor, direction, target, 0);
+    }
+
+    public void car(int passenger, int elevatorId, int target) {
+        append(TraceRecord.CAR, passenger, 0, Direction.IDLE, target, elevatorId);
+    }
+
+    // пишут пассажиры с разных потоков, запись короткая - хватает монитора
+    private synchronized void append(byte kind, int passenger, int floor, Direction dir, int target, int elevatorId) {
+        if (closed) return;
+        try {
+            if (buf.remaining() < RECORD) {
+                mapStart += buf.position();
+                remap();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        buf.putLong(clock.nanoTime() - t0);
+        buf.putInt(passenger);
+        buf.putShort((short) floor);
+        buf.putShort((short) target);
+        buf.putShort((short) elevatorId);
+        buf.put(kind);
+        buf.put((byte) dir.step());
+
+        records++;
+        if (kind == TraceRecord.HALL) halls++;
+    }
+
+    public synchronized long records() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            buf.force();
+            long end = mapStart + buf.position();
+            buf = null;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(records).putLong(halls);
+            header.clear();
+            ch.write(header, 0);
+
+            // хвост последнего куска не нужен; пока отображение живо, Windows обрезать не даст -
+            // тогда остаются нули, читатель все равно идет по счетчику из заголовка
+            try {
+                ch.truncate(end);
+            } catch (IOException ignored) {
+            }
+            ch.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
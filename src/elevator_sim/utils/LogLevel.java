@@ -0,0 +1,9 @@
+package elevator_sim.utils;
+
+public enum LogLevel {
+    DEBUG, // каждый этаж, шумно
+    INFO,
+    WARN,  // таймауты пассажиров
+    ERROR,
+    OFF
+}
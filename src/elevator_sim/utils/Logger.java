@@ -1,23 +1,113 @@
 package elevator_sim.utils;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.LinkedHashMap;
+import elevator_sim.engine.SimClock;
+
+import java.io.PrintStream;
 import java.util.Map;
-import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
+// режим и уровень задаются при запуске: -Dlog.mode=sync|async|off -Dlog.level=debug|info|warn|error
+// async: вызывающий поток только кладет примитивную запись в кольцевой буфер,
+// форматирует и печатает пачками отдельный поток, так логи не искажают замеры задержек
 public final class Logger {
 
+    public enum Mode { SYNC, ASYNC, OFF }
+
+    // подписи полей, одна копия на всю программу
+    private static final Map<String, String> LABELS = Map.ofEntries(
+            Map.entry("номер", "Запрос №"),
+            Map.entry("этаж", "Этаж"),
+            Map.entry("лифт", "Лифт №"),
+            Map.entry("напр", "Направление"),
+            Map.entry("цель", "Цель"),
+            Map.entry("пас", "Пассажир"),
+            Map.entry("с", "С этажа"),
+            Map.entry("на", "На этаж"),
+            Map.entry("ошибка", "Ошибка"),
+            Map.entry("err", "Ошибка"),
+            Map.entry("msg", "Сообщение")
+    );
+
+    // перевод направления на русский
+    private static final Map<String, String> DIR_RU = Map.of(
+            "UP", "вверх",
+            "DOWN", "вниз",
+            "IDLE", "—"
+    );
+
+    private static final int MAX_INTS = 3;
+    private static final int RING_SIZE = 1 << 16;
+    private static final int BATCH = 256;
+
     //чтобы время старта было одно на все потоки
     private static volatile Logger instance;
     private static final Object CLASS_LOCK = new Object();
 
-    private final Instant start;
+    private final SimClock clock = SimClock.REAL;
+    private final long start;
+    // событийный прогон печатает свое модельное время; часы у потока, который его гоняет,
+    // поэтому параллельные прогоны (MonteCarloRunner) не сбивают друг другу отсчет
+    private final ThreadLocal<RunClock> runClock = new ThreadLocal<>();
+
+    private static final class RunClock {
+        final SimClock clock;
+        final long start;
+
+        RunClock(SimClock clock) {
+            this.clock = clock;
+            this.start = clock.nanoTime();
+        }
+    }
+
+    private final Mode mode;
+    private volatile LogLevel level;
+
+    private final PrintStream out = System.out;
     private final ReentrantLock printLock = new ReentrantLock(true); // fair, чтобы строки не мешались
+    private final StringBuilder syncLine = new StringBuilder(256);
+
+    // кольцевой буфер async режима: ячейки выделены заранее, номер ячейки публикуется через seq
+    private static final class Slot {
+        long time;
+        String thread;
+        String event;
+        // WARN и ERROR писатель выталкивает сразу, не дожидаясь простоя
+        LogLevel level;
+        int ints;
+        final String[] keys = new String[MAX_INTS];
+        final int[] values = new int[MAX_INTS];
+        Object[] kv;
+    }
+
+    private final Slot[] ring;
+    private final AtomicLongArray seq;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+    private volatile Thread writer;
 
     private Logger() {
-        start = Instant.now();
+        start = clock.nanoTime();
+        mode = parseMode(System.getProperty("log.mode", "sync"));
+        level = parseLevel(System.getProperty("log.level", "debug"));
+
+        if (mode == Mode.ASYNC) {
+            ring = new Slot[RING_SIZE];
+            seq = new AtomicLongArray(RING_SIZE);
+            for (int i = 0; i < RING_SIZE; i++) {
+                ring[i] = new Slot();
+                seq.set(i, i);
+            }
+            Thread t = new Thread(this::writeLoop, "Логгер");
+            t.setDaemon(true);
+            writer = t;
+            t.start();
+        } else {
+            ring = null;
+            seq = null;
+        }
     }
 
     public static Logger get() {
@@ -34,78 +124,254 @@ public final class Logger {
         return local;
     }
 
+    // строки текущего потока идут по часам clock, отсчет начинается заново; остальные потоки не задевает
+    public static void useClock(SimClock clock) {
+        get().runClock.set(new RunClock(clock));
+    }
+
+    // поток снова печатает общее время
+    public static void clearClock() {
+        get().runClock.remove();
+    }
+
+    public static void setLevel(LogLevel level) {
+        get().level = level;
+    }
+
+    public static boolean enabled(LogLevel level) {
+        Logger l = get();
+        return l.mode != Mode.OFF && level.ordinal() >= l.level.ordinal();
+    }
+
+    private static Mode parseMode(String s) {
+        try {
+            return Mode.valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Mode.SYNC;
+        }
+    }
+
+    private static LogLevel parseLevel(String s) {
+        try {
+            return LogLevel.valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return LogLevel.DEBUG;
+        }
+    }
+
     public void log(String event, Object... kv) {
-        // время с начала симуляции в секундах
-        double dt = Duration.between(start, Instant.now()).toNanos() / 1_000_000_000.0;
-        String ts = String.format("%8.3fs", dt);
+        log(LogLevel.INFO, event, kv);
+    }
+
+    public void log(LogLevel lvl, String event, Object... kv) {
+        if (mode == Mode.OFF || lvl.ordinal() < level.ordinal()) return;
+        record(lvl, event, 0, null, 0, null, 0, null, 0, kv);
+    }
+
+    // запись без varargs и упаковки int - для горячих вызовов лифтов и диспетчера
+    private void logInts(LogLevel lvl, String event, int n, String k1, int v1, String k2, int v2, String k3, int v3) {
+        if (mode == Mode.OFF || lvl.ordinal() < level.ordinal()) return;
+        record(lvl, event, n, k1, v1, k2, v2, k3, v3, null);
+    }
 
+    private void record(LogLevel lvl, String event, int n, String k1, int v1, String k2, int v2, String k3, int v3,
+                        Object[] kv) {
+        RunClock rc = runClock.get();
+        long now = (rc != null) ? rc.clock.nanoTime() - rc.start : clock.nanoTime() - start;
         String tName = Thread.currentThread().getName();
 
-        // мапа для красивых подписей полей
-        Map<String, String> LABELS = new LinkedHashMap<>();
-        LABELS.put("номер", "Запрос №");
-        LABELS.put("этаж", "Этаж");
-        LABELS.put("лифт", "Лифт №");
-        LABELS.put("напр", "Направление");
-        LABELS.put("цель", "Цель");
-        LABELS.put("пас", "Пассажир");
-        LABELS.put("с", "С этажа");
-        LABELS.put("на", "На этаж");
-        LABELS.put("ошибка", "Ошибка");
-        LABELS.put("err", "Ошибка");
-        LABELS.put("msg", "Сообщение");
-
-        // перевод направления на русский
-        Map<String, String> DIR_RU = new LinkedHashMap<>();
-        DIR_RU.put("UP", "вверх");
-        DIR_RU.put("DOWN", "вниз");
-        DIR_RU.put("IDLE", "—");
-
-        String detailsStr = "-";
-        if (kv != null && kv.length > 0) {
-
-            //  чтобы красиво: Лифт: 2  Этаж: 5
-            StringJoiner sj = new StringJoiner(" | ");
+        if (mode == Mode.SYNC) {
+            // без lock строки из разных потоков будут перемешиваться
+            printLock.lock();
+            try {
+                StringBuilder sb = syncLine;
+                sb.setLength(0);
+                appendLine(sb, now, tName, event, n, k1, v1, k2, v2, k3, v3, kv);
+                out.println(sb);
+            } finally {
+                printLock.unlock();
+            }
+            return;
+        }
+
+        // захват ячейки по алгоритму ограниченной очереди Вьюкова, без блокировок
+        long pos = tail.get();
+        int mask = RING_SIZE - 1;
+        while (true) {
+            long s = seq.get((int) (pos & mask));
+            long dif = s - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (dif < 0) {
+                // буфер полон - ждем писателя, строки не теряем
+                Thread.yield();
+                pos = tail.get();
+            } else {
+                pos = tail.get();
+            }
+        }
+
+        Slot slot = ring[(int) (pos & mask)];
+        slot.time = now;
+        slot.thread = tName;
+        slot.event = event;
+        slot.level = lvl;
+        slot.ints = n;
+        slot.keys[0] = k1;
+        slot.values[0] = v1;
+        slot.keys[1] = k2;
+        slot.values[1] = v2;
+        slot.keys[2] = k3;
+        slot.values[2] = v3;
+        slot.kv = kv;
+        seq.lazySet((int) (pos & mask), pos + 1);
+    }
+
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder(BATCH * 96);
+        int mask = RING_SIZE - 1;
+
+        while (true) {
+            long h = head;
+            int taken = 0;
+            boolean urgent = false;
+
+            while (taken < BATCH) {
+                int idx = (int) (h & mask);
+                if (seq.get(idx) != h + 1) break;
 
+                Slot s = ring[idx];
+                appendLine(batch, s.time, s.thread, s.event, s.ints,
+                        s.keys[0], s.values[0], s.keys[1], s.values[1], s.keys[2], s.values[2], s.kv);
+                batch.append('\n');
+                s.kv = null;
+                if (s.level.ordinal() >= LogLevel.WARN.ordinal()) urgent = true;
+
+                seq.lazySet(idx, h + RING_SIZE);
+                h++;
+                taken++;
+            }
+
+            if (taken > 0) {
+                out.print(batch);
+                // при постоянном потоке строк простоя может не быть долго, а предупреждение нужно видеть сразу
+                if (urgent) out.flush();
+                batch.setLength(0);
+                head = h;
+            } else {
+                out.flush();
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+    }
+
+    // дожидаемся, пока писатель напечатает все, что уже в буфере
+    public static void flush() {
+        Logger l = get();
+        if (l.mode != Mode.ASYNC) return;
+
+        long target = l.tail.get();
+        while (l.head < target) {
+            LockSupport.unpark(l.writer);
+            LockSupport.parkNanos(200_000L);
+        }
+        l.out.flush();
+    }
+
+    private static void appendLine(StringBuilder sb, long nanos, String tName, String event, int n,
+                                   String k1, int v1, String k2, int v2, String k3, int v3, Object[] kv) {
+        // время с начала симуляции в секундах, как %8.3fs
+        appendSeconds(sb, nanos);
+        sb.append(" | ");
+        // фиксируем ширины, чтобы логи были ровные
+        appendPadded(sb, tName, 14);
+        sb.append(" | ");
+        appendPadded(sb, event, 22);
+        sb.append(" | ");
+
+        int before = sb.length();
+        if (n > 0) appendField(sb, before, k1, v1);
+        if (n > 1) appendField(sb, before, k2, v2);
+        if (n > 2) appendField(sb, before, k3, v3);
+
+        if (kv != null) {
             for (int i = 0; i + 1 < kv.length; i += 2) {
                 String k = String.valueOf(kv[i]);
                 Object vObj = kv[i + 1];
-
                 String title = LABELS.getOrDefault(k, k);
 
+                //  чтобы красиво: Лифт №2 | Этаж: 5
+                if (sb.length() > before) sb.append(" | ");
                 // важный момент: направление хотим русское
                 if ("напр".equals(k) || "direction".equals(k)) {
                     String vv = String.valueOf(vObj);
-                    vv = DIR_RU.getOrDefault(vv, vv);
-                    sj.add(title + ": " + vv);
-                } else if ("лифт".equals(k)) {
-                    sj.add(title + vObj);
-                } else if ("номер".equals(k)) {
-                    sj.add(title + vObj);
+                    sb.append(title).append(": ").append(DIR_RU.getOrDefault(vv, vv));
+                } else if ("лифт".equals(k) || "номер".equals(k)) {
+                    sb.append(title).append(vObj);
                 } else {
-                    sj.add(title + ": " + vObj);
+                    sb.append(title).append(": ").append(vObj);
                 }
             }
-
-            detailsStr = (sj.length() == 0) ? "-" : sj.toString();
         }
 
-        // фиксируем ширины, чтобы логи были ровные
-        String eventPadded = String.format("%-22s", event);
-        String tNamePadded = String.format("%-14s", tName);
+        if (sb.length() == before) sb.append('-');
+    }
 
-        String line = ts + " | " + tNamePadded + " | " + eventPadded + " | " + detailsStr;
+    private static void appendField(StringBuilder sb, int before, String k, int v) {
+        if (sb.length() > before) sb.append(" | ");
+        String title = LABELS.getOrDefault(k, k);
+        sb.append(title);
+        if (!"лифт".equals(k) && !"номер".equals(k)) sb.append(": ");
+        sb.append(v);
+    }
 
-        // без lock строки из разных потоков будут перемешиваться
-        printLock.lock();
-        try {
-            System.out.println(line);
-        } finally {
-            printLock.unlock();
-        }
+    private static void appendSeconds(StringBuilder sb, long nanos) {
+        long ms = Math.round(nanos / 1_000_000.0);
+        boolean neg = ms < 0;
+        if (neg) ms = -ms;
+        long sec = ms / 1000;
+        int frac = (int) (ms % 1000);
+
+        int digits = (sec == 0) ? 1 : (int) Math.log10(sec) + 1;
+        for (int i = digits + 4 + (neg ? 1 : 0); i < 8; i++) sb.append(' ');
+        if (neg) sb.append('-');
+        sb.append(sec).append('.');
+        if (frac < 100) sb.append('0');
+        if (frac < 10) sb.append('0');
+        sb.append(frac).append('s');
+    }
+
+    private static void appendPadded(StringBuilder sb, String s, int width) {
+        sb.append(s);
+        for (int i = s.length(); i < width; i++) sb.append(' ');
     }
 
     public static void logLine(String event, Object... kv) {
-        Logger.get().log(event, kv);
+        Logger.get().log(LogLevel.INFO, event, kv);
+    }
+
+    public static void logLine(String event, String k1, int v1) {
+        Logger.get().logInts(LogLevel.INFO, event, 1, k1, v1, null, 0, null, 0);
+    }
+
+    public static void logLine(String event, String k1, int v1, String k2, int v2) {
+        Logger.get().logInts(LogLevel.INFO, event, 2, k1, v1, k2, v2, null, 0);
+    }
+
+    public static void logLine(String event, String k1, int v1, String k2, int v2, String k3, int v3) {
+        Logger.get().logInts(LogLevel.INFO, event, 3, k1, v1, k2, v2, k3, v3);
+    }
+
+    public static void debugLine(String event, String k1, int v1, String k2, int v2) {
+        Logger.get().logInts(LogLevel.DEBUG, event, 2, k1, v1, k2, v2, null, 0);
+    }
+
+    public static void warnLine(String event, Object... kv) {
+        Logger.get().log(LogLevel.WARN, event, kv);
+    }
+
+    public static void errorLine(String event, Object... kv) {
+        Logger.get().log(LogLevel.ERROR, event, kv);
     }
 }
@@ -0,0 +1,51 @@
+package elevator_sim.workload;
+
+// выбор по весам за O(1) методом алиасов Уокера (построение по Возу за O(n))
+// каждая ячейка хранит свою вероятность и запасной индекс: один случайный индекс и одно сравнение
+final class AliasTable {
+    private final double[] prob;
+    private final int[] alias;
+
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        prob = new double[n];
+        alias = new int[n];
+
+        double sum = 0.0;
+        for (double w : weights) sum += w;
+        if (sum <= 0.0) throw new IllegalArgumentException("Все веса нулевые");
+
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int s = 0;
+        int l = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1.0) small[s++] = i;
+            else large[l++] = i;
+        }
+
+        while (s > 0 && l > 0) {
+            int lo = small[--s];
+            int hi = large[--l];
+            prob[lo] = scaled[lo];
+            alias[lo] = hi;
+            scaled[hi] = scaled[hi] + scaled[lo] - 1.0;
+            if (scaled[hi] < 1.0) small[s++] = hi;
+            else large[l++] = hi;
+        }
+        // остатки из-за округления - полные ячейки
+        while (l > 0) prob[large[--l]] = 1.0;
+        while (s > 0) prob[small[--s]] = 1.0;
+    }
+
+    int sample(SplitMix64 rnd) {
+        int i = rnd.nextInt(prob.length);
+        return (rnd.nextDouble() < prob[i]) ? i : alias[i];
+    }
+
+    int size() {
+        return prob.length;
+    }
+}
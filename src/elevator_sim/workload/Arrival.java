@@ -0,0 +1,10 @@
+package elevator_sim.workload;
+
+// одно прибытие пассажира; генератор заполняет переданный экземпляр, чтобы не создавать объекты на каждый вызов
+public final class Arrival {
+    public long passenger;
+    // секунды от начала прогона
+    public double time;
+    public int origin;
+    public int destination;
+}
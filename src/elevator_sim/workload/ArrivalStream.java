@@ -0,0 +1,75 @@
+package elevator_sim.workload;
+
+import elevator_sim.snapshot.SnapshotReader;
+import elevator_sim.snapshot.SnapshotWriter;
+
+import java.util.List;
+
+// неоднородный поток Пуассона методом прореживания (Льюис - Шедлер):
+// кандидаты идут с наибольшей интенсивностью фазы, кандидат в момент t остается с вероятностью rate(t) / max
+// на границе фазы поток начинается заново - у экспоненты нет памяти, поэтому это точно
+// на прибытие: логарифм, пара случайных чисел и выборка из таблицы алиасов, без аллокаций
+public final class ArrivalStream {
+    private final List<Workload.Phase> phases;
+    private final SplitMix64 rnd;
+
+    private int phase;
+    private double phaseStart;
+    private double time;
+    private long count;
+
+    ArrivalStream(List<Workload.Phase> phases, long seed) {
+        this.phases = phases;
+        this.rnd = new SplitMix64(seed);
+    }
+
+    public void next(Arrival into) {
+        while (true) {
+            Workload.Phase p = phases.get(phase);
+            double max = p.maxRate();
+            double end = phaseStart + p.seconds;
+
+            if (max > 0.0) {
+                time += -Math.log(1.0 - rnd.nextDouble()) / max;
+                if (time < end) {
+                    if (rnd.nextDouble() * max >= p.rateAt(time - phaseStart)) continue;
+
+                    into.passenger = count++;
+                    into.time = time;
+                    p.od.sample(rnd, into);
+                    return;
+                }
+            } else if (Double.isInfinite(end)) {
+                throw new IllegalStateException("Нулевая интенсивность без конца, пассажиров не будет");
+            }
+
+            time = end;
+            phaseStart = end;
+            phase = (phase + 1) % phases.size();
+        }
+    }
+
+    // фазы берутся из той же нагрузки, в снимке только где поток остановился
+    public void save(SnapshotWriter out) {
+        out.putInt(phases.size());
+        out.putInt(phase);
+        out.putDouble(phaseStart);
+        out.putDouble(time);
+        out.putLong(count);
+        out.putLong(rnd.state());
+    }
+
+    public void restore(SnapshotReader in) {
+        int n = in.getInt();
+        if (n != phases.size()) throw new IllegalStateException("Снимок другой нагрузки: фаз " + n);
+        phase = in.getInt();
+        phaseStart = in.getDouble();
+        time = in.getDouble();
+        count = in.getLong();
+        rnd.state(in.getLong());
+    }
+
+    public long generated() {
+        return count;
+    }
+}
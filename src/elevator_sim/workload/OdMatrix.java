@@ -0,0 +1,136 @@
+package elevator_sim.workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// матрица поездок: вес пары (откуда, куда), этажи с 1, диагональ не используется
+// выборка пары - одна таблица алиасов на все n*n ячеек
+public final class OdMatrix {
+    public static final int LOBBY = 1;
+
+    public final int floors;
+    private final double[] weights;
+    private AliasTable table;
+
+    public OdMatrix(int floors) {
+        this.floors = floors;
+        this.weights = new double[floors * floors];
+    }
+
+    public double get(int from, int to) {
+        return weights[index(from, to)];
+    }
+
+    public OdMatrix set(int from, int to, double weight) {
+        if (from == to || weight < 0.0) throw new IllegalArgumentException(from + " -> " + to + ": " + weight);
+        weights[index(from, to)] = weight;
+        table = null;
+        return this;
+    }
+
+    public OdMatrix add(int from, int to, double weight) {
+        return set(from, to, get(from, to) + weight);
+    }
+
+    private int index(int from, int to) {
+        return (from - 1) * floors + (to - 1);
+    }
+
+    // пара откуда-куда в into.origin / into.destination
+    public void sample(SplitMix64 rnd, Arrival into) {
+        AliasTable t = table;
+        if (t == null) table = t = new AliasTable(weights);
+
+        int cell = t.sample(rnd);
+        into.origin = cell / floors + 1;
+        into.destination = cell % floors + 1;
+    }
+
+    // все пары поровну - как раньше, когда этажи выбирались равномерно
+    public static OdMatrix uniform(int floors) {
+        OdMatrix m = new OdMatrix(floors);
+        addAll(m, 1.0, 1, floors);
+        return m;
+    }
+
+    // межэтажный трафик: в холл и из холла ездят мало
+    public static OdMatrix interfloor(int floors) {
+        OdMatrix m = new OdMatrix(floors);
+        addAll(m, 0.9, LOBBY + 1, floors);
+        addLobby(m, 0.05, 0.05);
+        return m;
+    }
+
+    // утренний пик: почти все из холла наверх
+    public static OdMatrix upPeak(int floors) {
+        OdMatrix m = new OdMatrix(floors);
+        addLobby(m, 0.85, 0.05);
+        addAll(m, 0.10, LOBBY + 1, floors);
+        return m;
+    }
+
+    public static OdMatrix downPeak(int floors) {
+        OdMatrix m = new OdMatrix(floors);
+        addLobby(m, 0.05, 0.85);
+        addAll(m, 0.10, LOBBY + 1, floors);
+        return m;
+    }
+
+    // обед: одновременно уходят вниз и возвращаются наверх
+    public static OdMatrix lunch(int floors) {
+        OdMatrix m = new OdMatrix(floors);
+        addLobby(m, 0.40, 0.45);
+        addAll(m, 0.15, LOBBY + 1, floors);
+        return m;
+    }
+
+    // доля share поровну на все пары этажей из [lo, hi]
+    private static void addAll(OdMatrix m, double share, int lo, int hi) {
+        int n = hi - lo + 1;
+        if (n < 2) return;
+        double w = share / (n * (n - 1));
+        for (int a = lo; a <= hi; a++) {
+            for (int b = lo; b <= hi; b++) {
+                if (a != b) m.add(a, b, w);
+            }
+        }
+    }
+
+    // доли поездок из холла на каждый этаж и с каждого этажа в холл
+    private static void addLobby(OdMatrix m, double up, double down) {
+        int upper = m.floors - 1;
+        if (upper < 1) return;
+        for (int f = LOBBY + 1; f <= m.floors; f++) {
+            m.add(LOBBY, f, up / upper);
+            m.add(f, LOBBY, down / upper);
+        }
+    }
+
+    // CSV без заголовка: строка - этаж отправления, столбец - этаж назначения, веса в любых единицах
+    public static OdMatrix load(Path path) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не прочитать матрицу поездок " + path, e);
+        }
+        lines.removeIf(s -> s.isBlank() || s.startsWith("#"));
+
+        OdMatrix m = new OdMatrix(lines.size());
+        for (int from = 1; from <= lines.size(); from++) {
+            String[] cells = lines.get(from - 1).split("[,;\\s]+");
+            if (cells.length != lines.size()) {
+                throw new IllegalArgumentException(path + ": в строке " + from + " " + cells.length
+                        + " значений, ожидалось " + lines.size());
+            }
+            for (int to = 1; to <= cells.length; to++) {
+                double w = Double.parseDouble(cells[to - 1].trim());
+                if (from != to && w > 0.0) m.set(from, to, w);
+            }
+        }
+        return m;
+    }
+}
@@ -0,0 +1,43 @@
+package elevator_sim.workload;
+
+// быстрый воспроизводимый генератор SplitMix64: одно сложение и три перемешивания на число
+// split() дает независимый поток с другим seed, так у каждого прогона и каждой фазы свой
+public final class SplitMix64 {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += GOLDEN);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // [0, 1) с 53 значащими битами
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // [0, bound) без заметного смещения для bound много меньше 2^32
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    // состояние для снимка прогона
+    long state() {
+        return state;
+    }
+
+    void state(long state) {
+        this.state = state;
+    }
+
+    public SplitMix64 split() {
+        return new SplitMix64(nextLong());
+    }
+}
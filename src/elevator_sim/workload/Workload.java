@@ -0,0 +1,133 @@
+package elevator_sim.workload;
+
+import elevator_sim.Config;
+import elevator_sim.SimConfig;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// нагрузка здания: фазы со своей интенсивностью и матрицей поездок, после последней фазы все повторяется
+// интенсивность внутри фазы меняется линейно от from до to пассажиров в секунду
+// -Dworkload=uniform|up_peak|down_peak|lunch|interfloor|day, -Dworkload.od=матрица.csv
+public final class Workload {
+
+    public enum Profile { UNIFORM, UP_PEAK, DOWN_PEAK, LUNCH, INTERFLOOR, DAY }
+
+    public static final class Phase {
+        public final double seconds;
+        public final double fromRate;
+        public final double toRate;
+        public final OdMatrix od;
+
+        public Phase(double seconds, double fromRate, double toRate, OdMatrix od) {
+            if (seconds <= 0.0 || fromRate < 0.0 || toRate < 0.0) {
+                throw new IllegalArgumentException("Фаза " + seconds + " с, " + fromRate + " -> " + toRate);
+            }
+            this.seconds = seconds;
+            this.fromRate = fromRate;
+            this.toRate = toRate;
+            this.od = od;
+        }
+
+        double maxRate() {
+            return Math.max(fromRate, toRate);
+        }
+
+        // интенсивность через x секунд от начала фазы
+        double rateAt(double x) {
+            if (Double.isInfinite(seconds)) return fromRate;
+            return fromRate + (toRate - fromRate) * x / seconds;
+        }
+    }
+
+    public final String name;
+    private final List<Phase> phases;
+
+    public Workload(String name, List<Phase> phases) {
+        if (phases.isEmpty()) throw new IllegalArgumentException("Нагрузка без фаз");
+        this.name = name;
+        this.phases = List.copyOf(phases);
+    }
+
+    public List<Phase> phases() {
+        return phases;
+    }
+
+    public ArrivalStream stream(long seed) {
+        return new ArrivalStream(phases, seed);
+    }
+
+    // постоянная интенсивность, одна матрица на весь прогон
+    public static Workload constant(String name, double rate, OdMatrix od) {
+        return new Workload(name, List.of(new Phase(Double.POSITIVE_INFINITY, rate, rate, od)));
+    }
+
+    // rate - средняя интенсивность; пики нарастают и спадают за Config.WORKLOAD_PHASE_SEC
+    public static Workload profile(Profile profile, int floors, double rate) {
+        double half = Config.WORKLOAD_PHASE_SEC / 2.0;
+        List<Phase> phases = new ArrayList<>();
+        switch (profile) {
+            case UNIFORM:
+                return constant("uniform", rate, OdMatrix.uniform(floors));
+            case INTERFLOOR:
+                return constant("interfloor", rate, OdMatrix.interfloor(floors));
+            case UP_PEAK:
+                peak(phases, half, rate, 0.5, OdMatrix.upPeak(floors));
+                break;
+            case DOWN_PEAK:
+                peak(phases, half, rate, 0.5, OdMatrix.downPeak(floors));
+                break;
+            case LUNCH:
+                peak(phases, half, rate, 0.3, OdMatrix.lunch(floors));
+                break;
+            case DAY: {
+                // рабочий день: утренний пик, тихая середина, обед, снова тихо, вечерний пик
+                OdMatrix quiet = OdMatrix.interfloor(floors);
+                peak(phases, half, rate, 0.5, OdMatrix.upPeak(floors));
+                phases.add(new Phase(2 * half, 0.6 * rate, 0.6 * rate, quiet));
+                peak(phases, half, rate, 0.3, OdMatrix.lunch(floors));
+                phases.add(new Phase(2 * half, 0.6 * rate, 0.6 * rate, quiet));
+                peak(phases, half, rate, 0.5, OdMatrix.downPeak(floors));
+                break;
+            }
+        }
+        return new Workload(profile.name().toLowerCase(Locale.ROOT), phases);
+    }
+
+    // подъем от (1 - swing) * rate до (1 + swing) * rate и обратно, в среднем ровно rate
+    private static void peak(List<Phase> phases, double half, double rate, double swing, OdMatrix od) {
+        phases.add(new Phase(half, (1 - swing) * rate, (1 + swing) * rate, od));
+        phases.add(new Phase(half, (1 + swing) * rate, (1 - swing) * rate, od));
+    }
+
+    public static Workload fromProperty(SimConfig config) {
+        String p = System.getProperty("workload", "uniform");
+        Profile profile;
+        try {
+            profile = Profile.valueOf(p.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная нагрузка " + p + ", есть: " + List.of(Profile.values()));
+        }
+
+        Workload w = profile(profile, config.floors, config.arrivalRate);
+        String od = System.getProperty("workload.od");
+        return (od == null) ? w : w.withOd(OdMatrix.load(Path.of(od)), config.floors);
+    }
+
+    // та же форма интенсивности, но все поездки по своей матрице
+    public Workload withOd(OdMatrix od, int floors) {
+        if (od.floors != floors) {
+            throw new IllegalArgumentException("В матрице " + od.floors + " этажей, в здании " + floors);
+        }
+        List<Phase> list = new ArrayList<>();
+        for (Phase p : phases) list.add(new Phase(p.seconds, p.fromRate, p.toRate, od));
+        return new Workload(name + "+od", list);
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + phases.size() + " фаз)";
+    }
+}